@@ -0,0 +1,11 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * The scene2d actor standing in for an entity, which handles input and
+ * everything still written against actors
+ */
+public class ActorComponent implements Component {
+	public CharacterActor actor;
+}
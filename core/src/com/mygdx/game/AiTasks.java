@@ -0,0 +1,139 @@
+package com.mygdx.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Leaf tasks for RPGAiTree's behaviour trees, imported by tree files as
+ * i.e. import findAttacks:"com.mygdx.game.AiTasks$FindAttacks".
+ *
+ * Tasks that search the map make at most one search per step, returning
+ * RUNNING until they're done. Any randomness must come from the ai's own
+ * generator so battles replay the same.
+ */
+public class AiTasks {
+
+	/**
+	 * Succeeds if the ai is in the given state
+	 */
+	public static class IsState extends LeafTask<RPGAiTree> {
+		@TaskAttribute(required = true)
+		public RPGAi.State state;
+
+		@Override
+		public Status execute() {
+			return getObject().getState() == state ? Status.SUCCEEDED : Status.FAILED;
+		}
+
+		@Override
+		protected Task<RPGAiTree> copyTo(Task<RPGAiTree> task) {
+			((IsState) task).state = state;
+			return task;
+		}
+	}
+
+	/**
+	 * Plans an attack on each character the ai is alerted to, one per step,
+	 * keeping those it can reach. Always succeeds, even if none can be.
+	 */
+	public static class FindAttacks extends LeafTask<RPGAiTree> {
+		private final List<CharacterActor> targets = new ArrayList<>();
+		private int next;  // index into targets
+		private int found;  // attacks found so far
+
+		@Override
+		public void start() {
+			targets.clear();
+			targets.addAll(getObject().getAlertedTo());
+			next = 0;
+			found = 0;
+		}
+
+		@Override
+		public Status execute() {
+			if (next < targets.size()) {
+				RPGAiTree ai = getObject();
+				Strategy s = ai.getAttackStrategy(targets.get(next++), found);
+				if (s != null) {
+					ai.attacks.add(s);
+					found++;
+				}
+			}
+			return next < targets.size() ? Status.RUNNING : Status.SUCCEEDED;
+		}
+
+		@Override
+		public void end() {
+			targets.clear();
+		}
+
+		@Override
+		protected Task<RPGAiTree> copyTo(Task<RPGAiTree> task) {
+			return task;
+		}
+	}
+
+	/**
+	 * Chooses the best attack found, failing if there are none
+	 */
+	public static class ChooseAttack extends LeafTask<RPGAiTree> {
+		@Override
+		public Status execute() {
+			RPGAiTree ai = getObject();
+			if (ai.attacks.isEmpty()) {
+				GameLog.post(GameLog.Type.PLAN, ai.getBody(), null, 0, 0);  // no way to attack
+				return Status.FAILED;
+			}
+			ai.choice = ai.chooseAttackStrategy(ai.attacks);
+			return Status.SUCCEEDED;
+		}
+
+		@Override
+		protected Task<RPGAiTree> copyTo(Task<RPGAiTree> task) {
+			return task;
+		}
+	}
+
+	/**
+	 * Wanders a random distance of up to half the enemy's moves, trying one
+	 * tile per step. Succeeds, staying put, if no tile can be reached.
+	 */
+	public static class Wander extends LeafTask<RPGAiTree> {
+		private List<Vector2> tiles;  // left to try, null to stay put
+
+		@Override
+		public void start() {
+			tiles = getObject().getWanderTiles();
+		}
+
+		@Override
+		public Status execute() {
+			RPGAiTree ai = getObject();
+			if (tiles == null || tiles.isEmpty()) {
+				ai.choice = new Strategy();
+				return Status.SUCCEEDED;
+			}
+			Strategy s = ai.getWanderStrategy(tiles.remove(ai.getRandom().nextInt(tiles.size())));
+			if (s == null) {
+				return Status.RUNNING;
+			}
+			ai.choice = s;
+			return Status.SUCCEEDED;
+		}
+
+		@Override
+		public void end() {
+			tiles = null;
+		}
+
+		@Override
+		protected Task<RPGAiTree> copyTo(Task<RPGAiTree> task) {
+			return task;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.mygdx.game;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The tiles an area attack covers, worked out once per shape and size for
+ * each of 8 directions and kept as rows of bits. Row r, bit i is the tile
+ * (i - size, r - size) from the shape's origin, so a stencil is at most
+ * 63 tiles across and a row can be ANDed straight onto 64 tiles of a map row.
+ *
+ * Directions go counter-clockwise in steps of 45 degrees, 0 facing +x.
+ */
+public class AreaStencil {
+	public static final int MAX_SIZE = 31;  // largest size whose rows fit in a long
+	public static final int DIRECTIONS = 8;
+
+	// unit step for each direction
+	private static final int[] STEP_X = {1, 1, 0, -1, -1, -1, 0, 1};
+	private static final int[] STEP_Y = {0, 1, 1, 1, 0, -1, -1, -1};
+
+	public enum Shape {
+		RADIUS,  // round blast centered on the target, the same every direction
+		LINE,  // straight line out from the attacker
+		CONE;  // 90 degree cone out from the attacker
+	}
+
+	private static final Map<Integer, AreaStencil> cache = new HashMap<>();
+
+	public final Shape shape;
+	public final int size;  // radius, or how far lines and cones go
+	private final long[][] rows;  // by direction, then row
+
+	private AreaStencil(Shape shape, int size) {
+		this.shape = shape;
+		this.size = size;
+		rows = new long[DIRECTIONS][];
+		for (int d = 0; d < DIRECTIONS; d++) {
+			if (shape == Shape.RADIUS && d > 0) {
+				rows[d] = rows[0];  // no need to turn a circle
+				continue;
+			}
+			rows[d] = new long[size * 2 + 1];
+			for (int dy = -size; dy <= size; dy++) {
+				for (int dx = -size; dx <= size; dx++) {
+					if (covers(dx, dy, d)) {
+						rows[d][dy + size] |= 1L << (dx + size);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the stencil for a shape, making it the first time it's asked for
+	 * @param size radius, or how far lines and cones go, up to MAX_SIZE
+	 */
+	public static AreaStencil get(Shape shape, int size) {
+		if (size < 0 || size > MAX_SIZE) {
+			throw new IllegalArgumentException("area size " + size + " isn't between 0 and " + MAX_SIZE);
+		}
+		int key = shape.ordinal() * (MAX_SIZE + 1) + size;
+		AreaStencil s = cache.get(key);
+		if (s == null) {
+			s = new AreaStencil(shape, size);
+			cache.put(key, s);
+		}
+		return s;
+	}
+
+	/**
+	 * @return the direction closest to pointing along dx, dy, 0 if both are 0
+	 */
+	public static int direction(int dx, int dy) {
+		if (dx == 0 && dy == 0) { return 0; }
+		// StrictMath so every platform rounds the same way
+		int d = (int) Math.round(StrictMath.atan2(dy, dx) / (Math.PI / 4));
+		return (d + DIRECTIONS) % DIRECTIONS;
+	}
+
+	/**
+	 * @return true if the shape pointing in direction d covers the tile dx, dy from its origin
+	 */
+	private boolean covers(int dx, int dy, int d) {
+		switch (shape) {
+			case RADIUS:
+				return dx * dx + dy * dy <= size * size + size;
+			case LINE:
+				for (int i = 1; i <= size; i++) {
+					if (dx == STEP_X[d] * i && dy == STEP_Y[d] * i) {
+						return true;
+					}
+				}
+				return false;
+			case CONE:
+				if (dx == 0 && dy == 0) { return false; }
+				// within 45 degrees of the direction, worked out without rounding
+				int dot = dx * STEP_X[d] + dy * STEP_Y[d];
+				int stepLength2 = STEP_X[d] * STEP_X[d] + STEP_Y[d] * STEP_Y[d];
+				return dot > 0 && 2L * dot * dot >= (long) (dx * dx + dy * dy) * stepLength2;
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether the shape is centered on the target, rather than starting at the attacker
+	 */
+	public boolean isCenteredOnTarget() {
+		return shape == Shape.RADIUS;
+	}
+
+	/**
+	 * @param direction see direction
+	 * @param row dy + size, 0 to size * 2
+	 * @return bits of the tiles covered in the row, bit i being dx = i - size
+	 */
+	public long getRow(int direction, int row) {
+		return rows[direction][row];
+	}
+}
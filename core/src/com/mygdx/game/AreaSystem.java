@@ -0,0 +1,222 @@
+package com.mygdx.game;
+
+import java.util.Set;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * Works out who area attacks hit. Each team's characters are kept as a bitset
+ * per map row, so the characters an attack hits are its stencil ANDed with
+ * the other team's occupancy and with what can be seen from where the attack
+ * comes from, a row of up to 64 tiles at a time. Sight comes from
+ * DarknessManager's cached views rather than tracing a line to every tile.
+ */
+public class AreaSystem extends EntitySystem implements EntityListener {
+	private static final int PLAYERS = InfluenceSystem.PLAYERS;
+	private static final int ENEMIES = InfluenceSystem.ENEMIES;
+
+	private final RPGStage stage;
+	private ImmutableArray<Entity> characters;
+	private final ObjectIntMap<Entity> tiles = new ObjectIntMap<>();  // tile each character is marked on
+
+	private int width, height, words;  // map size, words is longs per row
+	private long[][] occupied = new long[2][0];  // by team, row y's bits starting at y * words
+	private Entity[] byTile = new Entity[0];  // indexed x * height + y
+	private final long[] sight = new long[AreaStencil.MAX_SIZE * 2 + 1];  // reused, rows of tiles in view
+	private final Vector2 v = new Vector2();  // reused for sight lookups
+
+	public AreaSystem(RPGStage stage) {
+		this.stage = stage;
+	}
+
+	@Override
+	public void addedToEngine(Engine engine) {
+		Family family = Family.all(CellComponent.class, ActorComponent.class).get();
+		characters = engine.getEntitiesFor(family);
+		engine.addEntityListener(family, this);
+		width = -1;  // rebuilt on first use
+	}
+
+	@Override
+	public void removedFromEngine(Engine engine) {
+		engine.removeEntityListener(this);
+		tiles.clear();
+	}
+
+	@Override
+	public void entityAdded(Entity entity) {
+		if (width < 0) { return; }
+		mark(entity);
+	}
+
+	@Override
+	public void entityRemoved(Entity entity) {
+		if (width < 0) { return; }
+		unmark(entity);
+	}
+
+	/**
+	 * Tells the occupancy a character changed tile
+	 */
+	public void moved(Entity entity) {
+		if (width < 0) { return; }
+		unmark(entity);
+		mark(entity);
+	}
+
+	/**
+	 * Finds the characters an area attack hits
+	 * @param attacker character making the attack, only the other team is hit
+	 * @param target tile aimed at
+	 * @param a the attack, which must have an area
+	 * @param out where to add the characters hit, a row at a time
+	 * @return out
+	 */
+	public Array<CharacterActor> getTargets(CharacterActor attacker, Vector2 target, AttackAction a,
+			Array<CharacterActor> out) {
+		ensureSize();
+		AreaStencil stencil = AreaStencil.get(a.area, a.areaSize);
+		int ox = originX(attacker, target, stencil);
+		int oy = originY(attacker, target, stencil);
+		int direction = direction(attacker, target);
+		long[] team = occupied[attacker instanceof EnemyActor ? PLAYERS : ENEMIES];
+		int s = stencil.size;
+
+		loadSight(ox, oy, s);
+		for (int r = 0; r <= s * 2; r++) {
+			int y = oy - s + r;
+			if (y < 0 || y >= height) { continue; }
+			long hit = stencil.getRow(direction, r) & sight[r] & window(team, y, ox - s);
+			while (hit != 0) {
+				int x = ox - s + Long.numberOfTrailingZeros(hit);
+				out.add(Mappers.actor.get(byTile[x * height + y]).actor);
+				hit &= hit - 1;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Finds every tile an area attack covers, whoever is on them, i.e. to show it
+	 * @param out where to add the tiles, as x, y pairs
+	 * @return out
+	 */
+	public IntArray getTiles(CharacterActor attacker, Vector2 target, AttackAction a, IntArray out) {
+		ensureSize();
+		AreaStencil stencil = AreaStencil.get(a.area, a.areaSize);
+		int ox = originX(attacker, target, stencil);
+		int oy = originY(attacker, target, stencil);
+		int direction = direction(attacker, target);
+		int s = stencil.size;
+
+		loadSight(ox, oy, s);
+		for (int r = 0; r <= s * 2; r++) {
+			int y = oy - s + r;
+			if (y < 0 || y >= height) { continue; }
+			long covered = stencil.getRow(direction, r) & sight[r];
+			while (covered != 0) {
+				out.add(ox - s + Long.numberOfTrailingZeros(covered), y);
+				covered &= covered - 1;
+			}
+		}
+		return out;
+	}
+
+	private static int originX(CharacterActor attacker, Vector2 target, AreaStencil stencil) {
+		return stencil.isCenteredOnTarget() ? (int) target.x : Mappers.cell.get(attacker.getEntity()).x;
+	}
+
+	private static int originY(CharacterActor attacker, Vector2 target, AreaStencil stencil) {
+		return stencil.isCenteredOnTarget() ? (int) target.y : Mappers.cell.get(attacker.getEntity()).y;
+	}
+
+	private static int direction(CharacterActor attacker, Vector2 target) {
+		CellComponent cell = Mappers.cell.get(attacker.getEntity());
+		return AreaStencil.direction((int) target.x - cell.x, (int) target.y - cell.y);
+	}
+
+	/**
+	 * @return tiles that can be seen from a tile within range, see DarknessManager.getVisibleTiles
+	 */
+	protected Set<Vector2> getSight(Vector2 from, int range) {
+		return stage.darkness.getVisibleTiles(from, range);
+	}
+
+	/**
+	 * Fills sight with the tiles in view from ox, oy, in the same layout as a stencil of size s
+	 */
+	private void loadSight(int ox, int oy, int s) {
+		for (int r = 0; r <= s * 2; r++) {
+			sight[r] = 0;
+		}
+		if (ox < 0 || oy < 0 || ox >= width || oy >= height) { return; }  // nothing seen from off the map
+		v.set(ox, oy);
+		for (Vector2 t : getSight(v, s)) {
+			int dx = (int) t.x - ox + s;
+			int dy = (int) t.y - oy + s;
+			if (dx >= 0 && dy >= 0 && dx <= s * 2 && dy <= s * 2) {
+				sight[dy] |= 1L << dx;
+			}
+		}
+	}
+
+	/**
+	 * @return occupancy bits of row y for the 64 tiles from x0, which may be off the map
+	 */
+	private long window(long[] bits, int y, int x0) {
+		if (x0 < 0) {
+			return x0 <= -64 ? 0 : window(bits, y, 0) << -x0;
+		}
+		int w = x0 >>> 6;
+		int b = x0 & 63;
+		long low = w < words ? bits[y * words + w] >>> b : 0;
+		long high = b != 0 && w + 1 < words ? bits[y * words + w + 1] << (64 - b) : 0;
+		return low | high;
+	}
+
+	/**
+	 * Rebuilds the occupancy if the map's size changed (or it was never built)
+	 */
+	private void ensureSize() {
+		MapInfo map = RPG.getCurrentMapInfo();
+		if (map.getWidth() == width && map.getHeight() == height) { return; }
+		width = map.getWidth();
+		height = map.getHeight();
+		words = (width + 63) >>> 6;
+		occupied = new long[2][words * height];
+		byTile = new Entity[width * height];
+		tiles.clear();
+		for (int i = 0; i < characters.size(); i++) {
+			mark(characters.get(i));
+		}
+	}
+
+	private void mark(Entity e) {
+		CellComponent cell = Mappers.cell.get(e);
+		if (cell.x < 0 || cell.y < 0 || cell.x >= width || cell.y >= height) { return; }
+		int team = Mappers.brain.has(e) ? ENEMIES : PLAYERS;
+		occupied[team][cell.y * words + (cell.x >>> 6)] |= 1L << (cell.x & 63);
+		byTile[cell.x * height + cell.y] = e;
+		tiles.put(e, cell.x * height + cell.y);
+	}
+
+	private void unmark(Entity e) {
+		int tile = tiles.remove(e, -1);
+		if (tile < 0 || byTile[tile] != e) { return; }
+		int x = tile / height;
+		int y = tile % height;
+		byTile[tile] = null;
+		for (int team = 0; team < 2; team++) {
+			occupied[team][y * words + (x >>> 6)] &= ~(1L << (x & 63));
+		}
+	}
+}
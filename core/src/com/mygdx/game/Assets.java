@@ -0,0 +1,101 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+
+/**
+ * Shared, reference counted registry for textures and other assets loaded
+ * from files, so every character or attack using the same image shares one texture.
+ * Each get must be matched by a release; a texture is disposed once
+ * its last user releases it.
+ */
+public class Assets {
+	private static AssetManager manager;
+	
+	/**
+	 * @return the AssetManager backing the registry, created if needed
+	 */
+	public static AssetManager getManager() {
+		if (manager == null) {
+			manager = new AssetManager();
+		}
+		return manager;
+	}
+	
+	/**
+	 * Gets a shared texture, loading it if no one is using it yet
+	 * @param path internal path of the texture
+	 * @return the texture, which must later be given to release
+	 */
+	public static Texture getTexture(String path) {
+		return get(path, Texture.class);
+	}
+	
+	/**
+	 * Gets a shared skin, loading it if no one is using it yet
+	 * @param path internal path of the skin's json
+	 * @return the skin, which must later be given to release
+	 */
+	public static Skin getSkin(String path) {
+		return get(path, Skin.class);
+	}
+	
+	/**
+	 * Gets any shared asset, loading it if no one is using it yet
+	 * @param path internal path of the asset
+	 * @param type type of the asset
+	 * @return the asset, which must later be given to release
+	 */
+	public static <T> T get(String path, Class<T> type) {
+		AssetManager m = getManager();
+		if (m.isLoaded(path, type)) {
+			m.setReferenceCount(path, m.getReferenceCount(path) + 1);
+			return m.get(path, type);
+		}
+		m.load(path, type);
+		return m.finishLoadingAsset(path);
+	}
+	
+	/**
+	 * Releases one use of a shared texture, disposing it if it has no other users
+	 * @param path internal path of the texture
+	 */
+	public static void release(String path) {
+		if (manager != null && manager.isLoaded(path)) {
+			manager.unload(path);
+		}
+	}
+	
+	/**
+	 * Releases one use of a shared asset. Assets that didn't come from
+	 * the registry are ignored.
+	 * @param t the asset to release, may be null
+	 */
+	public static void release(Object t) {
+		if (manager == null || t == null) { return; }
+		String path = manager.getAssetFileName(t);
+		if (path != null) {
+			manager.unload(path);
+		}
+	}
+	
+	/**
+	 * @return number of users of a texture, 0 if it isn't loaded
+	 */
+	public static int getReferenceCount(String path) {
+		if (manager == null || !manager.isLoaded(path)) { return 0; }
+		return manager.getReferenceCount(path);
+	}
+	
+	/**
+	 * Disposes every texture in the registry, whether or not it is still used.
+	 * Call when exiting the game.
+	 */
+	public static void dispose() {
+		if (manager != null) {
+			manager.dispose();
+			manager = null;
+		}
+	}
+}
@@ -1,9 +1,10 @@
 package com.mygdx.game;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
+import com.mygdx.game.ActionProperties.CanMoveThrough;
 import com.mygdx.game.ActionProperties.CanSelect;
 import com.mygdx.game.ActionProperties.EffectedByTerrain;
+import com.mygdx.game.ActionProperties.RequireLineOfSight;
 
 /**
  * Contains information about an attack action a character can make.
@@ -24,6 +25,8 @@ public class AttackAction {
 	public final int damage;  // the amouont of dmg the attack does
 	public final int range;  // the range the 
 	public Texture uiImage;   // the ui image to select the attack (if player action)
+	public final AreaStencil.Shape area;  // shape of the area hit, null if only the target is
+	public final int areaSize;  // radius, or how far lines and cones go
 	
 	/**
 	 * Initializes a new attack without an associated ui image (i.e. NPC action)
@@ -38,6 +41,44 @@ public class AttackAction {
 		this.damage = damage;
 		this.range = range;
 		this.uiImage = null;
+		this.area = null;
+		this.areaSize = 0;
+	}
+	
+	/**
+	 * Initializes a new attack that hits everyone of the other team in an area
+	 * @param name name of the attack, should be unique
+	 * @param p what tiles can be aimed at
+	 * @param damage damage done to each character hit
+	 * @param range how far away it can be aimed, in tiles
+	 * @param t the ui image to select the attack, may be null
+	 * @param area shape of the area, starting from the attacker for lines and cones
+	 * @param areaSize radius, or how far lines and cones go, in tiles
+	 */
+	public AttackAction(String name, ActionProperties p, int damage, int range, Texture t,
+			AreaStencil.Shape area, int areaSize) {
+		this.attackName = name;
+		this.p = p;
+		this.damage = damage;
+		this.range = range;
+		this.uiImage = t;
+		this.area = area;
+		this.areaSize = areaSize;
+	}
+	
+	/**
+	 * @return true if the attack hits an area rather than a single target
+	 */
+	public boolean isArea() {
+		return area != null;
+	}
+	
+	/**
+	 * @return the furthest from the attacker's tile the attack could hit,
+	 * 		diagonals counting as one
+	 */
+	public int getReach() {
+		return range + areaSize;
 	}
 	
 	/**
@@ -65,16 +106,36 @@ public class AttackAction {
 	}
 	
 	/**
-	 * Gets a predefined attack action by name
+	 * Releases this attack's ui image back to the shared Assets registry
+	 */
+	public void dispose() {
+		Assets.release(uiImage);
+		uiImage = null;
+	}
+	
+	/**
+	 * Gets a predefined attack action by name, sharing its ui image through Assets
 	 */
 	public static AttackAction getAttack(String name) {
 		switch (name) {
 			case "slash":
 				return new AttackAction("Slash", new ActionProperties(CanSelect.ENEMY,
-						EffectedByTerrain.IGNORE_TERRAIN), 2, 1, new Texture(Gdx.files.internal("data/UiData/attackIcon.png")));
+						EffectedByTerrain.IGNORE_TERRAIN), 2, 1, Assets.getTexture("data/UiData/attackIcon.png"));
+			case "cleave":  // aimed at a neighbouring tile
+				return new AttackAction("Cleave", new ActionProperties(CanSelect.TILE, CanSelect.CHARACTER,
+						CanMoveThrough.CHARACTER, EffectedByTerrain.IGNORE_TERRAIN), 1, 1, Assets.getTexture("data/UiData/attackIcon.png"),
+						AreaStencil.Shape.CONE, 2);
+			case "pierce":
+				return new AttackAction("Pierce", new ActionProperties(CanSelect.TILE, CanSelect.CHARACTER,
+						CanMoveThrough.CHARACTER, EffectedByTerrain.IGNORE_TERRAIN), 2, 1, Assets.getTexture("data/UiData/attackIcon.png"),
+						AreaStencil.Shape.LINE, 3);
+			case "fireball":
+				return new AttackAction("Fireball", new ActionProperties(CanSelect.TILE, CanSelect.CHARACTER,
+						CanMoveThrough.CHARACTER, EffectedByTerrain.IGNORE_TERRAIN, RequireLineOfSight.REQUIRE), 1, 4,
+						Assets.getTexture("data/UiData/attackIcon.png"), AreaStencil.Shape.RADIUS, 1);
 			default:
 				return new AttackAction("Stab", new ActionProperties(CanSelect.ENEMY,
-						EffectedByTerrain.IGNORE_TERRAIN), 2, 1, new Texture(Gdx.files.internal("data/UiData/attackIcon.png")));
+						EffectedByTerrain.IGNORE_TERRAIN), 2, 1, Assets.getTexture("data/UiData/attackIcon.png"));
 		}
 	}
 }
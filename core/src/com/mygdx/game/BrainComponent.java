@@ -0,0 +1,10 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * AI controlling an entity. Only enemies have one.
+ */
+public class BrainComponent implements Component {
+	public RPGAi brain;
+}
@@ -0,0 +1,10 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * Tile an entity stands on, kept in step with its actor's position
+ */
+public class CellComponent implements Component {
+	public int x, y;
+}
@@ -1,9 +1,11 @@
 package com.mygdx.game;
 
+import java.util.Comparator;
 import java.util.List;
 
+import com.badlogic.ashley.core.Component;
+import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
@@ -12,36 +14,57 @@ import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 
 /**
  * An actor representing a character, either NPC or player controlled.
- * Holds info about the characters abilities and display.
+ * The character's game data (stats, tile, vision, looks) lives in components
+ * on its entity, which joins the stage's engine along with the actor; the
+ * actor handles input and is drawn by the stage's CharacterRenderSystem.
  */
 public class CharacterActor extends Actor {
 	private RPGStage parent;
+	private int id = -1;  // stage assigned id, stable across replays and saves
+	
+	private final Entity entity;
+	private final StatsComponent stats;
+	private final CellComponent cell;
+	private final VisionComponent vision;
+	private final SpriteComponent sprite;
 	
-	private Texture texture;  // texture for this actor
 	private final String name;  // unique name for actor
 	private String className;  // type name of actor (i.e. orc), may be same as name
-	private int maxSpeed;  // how many tiles can be moved each turn
-	private int maxHealth; // how much dmg it can take
-	private int vision;
-	
-	private int speedRemaining;  // number of moves left this turn
-	private int healthRemaining;  // health remaining
 	
 	private List<AttackAction> actions;  // actions a character can make
 	private AttackAction basicAttack; 
 	
-	private int maxActions;
-	private int actionsLeft;
+	/**
+	 * Highest initiative first, ties going to the lowest id, so turn order is
+	 * the same on every run
+	 */
+	public static final Comparator<CharacterActor> INITIATIVE_ORDER = new Comparator<CharacterActor>() {
+		@Override
+		public int compare(CharacterActor a, CharacterActor b) {
+			if (a.stats.initiative != b.stats.initiative) {
+				return Integer.compare(b.stats.initiative, a.stats.initiative);
+			}
+			return Integer.compare(a.id, b.id);
+		}
+	};
 	
 	/**
 	 * @param form The texture to represent this character
 	 * @param name The name of this character
 	 */
 	public CharacterActor(Texture form, String name, int speed) {
-		this.texture = form;
 		this.name = name;
-		this.maxSpeed = speed;
-		this.setBounds(getX(), getY(), texture.getWidth(), texture.getHeight());
+		entity = new Entity();
+		stats = addComponent(new StatsComponent());
+		cell = addComponent(new CellComponent());
+		vision = addComponent(new VisionComponent());
+		sprite = addComponent(new SpriteComponent());
+		addComponent(new ActorComponent()).actor = this;
+		
+		sprite.texture = form;
+		stats.maxSpeed = speed;
+		stats.initiative = speed;
+		this.setBounds(getX(), getY(), form.getWidth(), form.getHeight());
 	}
 	
 	/**
@@ -50,25 +73,73 @@ public class CharacterActor extends Actor {
 	 */
 	public CharacterActor(RPGStage parent, CharacterInfo i) {
 		this.parent = parent;
-		this.texture = i.t;
 		this.className = i.className;
 		this.name = i.name;
-		this.maxSpeed = i.maxSpeed;
-		this.maxHealth = i.maxHealth;
 		this.actions = i.actions;
 		this.basicAttack = i.basicAttack;
-		this.maxActions = 1;
-		this.vision = i.vision;
-		this.setBounds(getX(), getY(), i.t.getWidth(), i.t.getHeight());
+		entity = new Entity();
+		stats = addComponent(new StatsComponent());
+		cell = addComponent(new CellComponent());
+		vision = addComponent(new VisionComponent());
+		sprite = addComponent(new SpriteComponent());
+		addComponent(new ActorComponent()).actor = this;
 		
-		this.actionsLeft = 1;
-		this.healthRemaining = this.maxHealth;
-		this.speedRemaining = this.maxSpeed;
+		sprite.texture = i.t;
+		vision.range = i.vision;
+		stats.maxSpeed = i.maxSpeed;
+		stats.maxHealth = i.maxHealth;
+		stats.maxActions = 1;
+		stats.initiative = i.initiative;
+		stats.actionsLeft = 1;
+		stats.healthRemaining = stats.maxHealth;
+		stats.speedRemaining = stats.maxSpeed;
+		this.setBounds(getX(), getY(), i.t.getWidth(), i.t.getHeight());
+	}
+	
+	/**
+	 * Adds a component to this character's entity
+	 * @return the component
+	 */
+	protected <T extends Component> T addComponent(T c) {
+		entity.add(c);
+		return c;
+	}
+	
+	/**
+	 * @return the entity holding this character's components
+	 */
+	public Entity getEntity() {
+		return entity;
 	}
 	
+	// keep the stage's hit index and engine up to date
 	@Override
-	public void draw(Batch batch, float alpha) {
-		batch.draw(texture,  getX(),  getY());
+	protected void setStage(Stage stage) {
+		if (getStage() instanceof RPGStage) {
+			((RPGStage) getStage()).getHitIndex().remove(this);
+			((RPGStage) getStage()).getEngine().removeEntity(entity);
+		}
+		super.setStage(stage);
+		if (stage instanceof RPGStage) {
+			((RPGStage) stage).getHitIndex().update(this);
+			((RPGStage) stage).getEngine().addEntity(entity);
+		}
+	}
+	
+	@Override
+	protected void positionChanged() {
+		cell.x = (int) getX() / RPGStage.TILE_SIZE;
+		cell.y = (int) getY() / RPGStage.TILE_SIZE;
+		if (getStage() instanceof RPGStage) {
+			((RPGStage) getStage()).getHitIndex().update(this);
+			((RPGStage) getStage()).getEngine().getSystem(InfluenceSystem.class).moved(entity);
+			((RPGStage) getStage()).getEngine().getSystem(AreaSystem.class).moved(entity);
+		}
+	}
+	
+	@Override
+	protected void sizeChanged() {
+		positionChanged();
 	}
 	
 	/**
@@ -78,117 +149,196 @@ public class CharacterActor extends Actor {
 		return name;
 	}
 	
+	/**
+	 * @return id given by the stage when this character was added, -1 if never added
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * @param a one of this character's attacks
+	 * @return index to find the attack again with getAction, -1 for the basic attack
+	 */
+	public int getActionIndex(AttackAction a) {
+		if (a == basicAttack || actions == null) {
+			return -1;
+		}
+		return actions.indexOf(a);
+	}
+	
+	/**
+	 * @param index index from getActionIndex
+	 * @return the attack, the basic attack for -1
+	 */
+	public AttackAction getAction(int index) {
+		if (index < 0 || actions == null || index >= actions.size()) {
+			return basicAttack;
+		}
+		return actions.get(index);
+	}
+	
+	public int getActionsLeft() {
+		return stats.actionsLeft;
+	}
+	
+	public void setActionsLeft(int actions) {
+		stats.actionsLeft = actions;
+	}
+	
+	/**
+	 * @return name of this character's class, as given to CharacterInfo.getCharacterInfo
+	 */
+	public String getClassName() {
+		return className;
+	}
+	
 	/**
 	 * @return this character's tile location on the stage as a tile
 	 */
 	public Vector2 getCell() {
-		return new Vector2(((int) getX()) / 64, ((int) getY()) / 64);
+		return new Vector2(cell.x, cell.y);
 	}
 	
 	public AttackAction getBasicAttack() {
 		return basicAttack;
 	}
 	
+	/**
+	 * @return the furthest any of this character's attacks could hit from
+	 * 		where it stands, 0 if it has none
+	 */
+	public int getAttackReach() {
+		int reach = basicAttack != null ? basicAttack.getReach() : 0;
+		if (actions != null) {
+			for (AttackAction a : actions) {
+				reach = Math.max(reach, a.getReach());
+			}
+		}
+		return reach;
+	}
+	
 	/**
 	 * @return the number of tiles this character can move in a turn
 	 */
 	public int getMaxSpeed() {
-		return maxSpeed;
+		return stats.maxSpeed;
 	}
 	
 	public int getMaxHealth() {
-		return maxHealth;
+		return stats.maxHealth;
 	}
 	
 	public int getSpeedRemaining() {
-		return speedRemaining;
+		return stats.speedRemaining;
 	}
 	
 	public void setSpeedRemaining(int moves) {
-		speedRemaining = moves;
+		stats.speedRemaining = moves;
 	}
 	
 	public boolean hasSpeedRemaining() {
-		return speedRemaining > 0;
+		return stats.speedRemaining > 0;
 	}
 	
 	public boolean canMove(int spaces) {
-		return spaces <= speedRemaining;
+		return spaces <= stats.speedRemaining;
 	}
 	
 	public int moveSpaces(int spaces) {
-		speedRemaining -= spaces;
-		return speedRemaining;	
+		stats.speedRemaining -= spaces;
+		return stats.speedRemaining;	
 	}
 	
 	public boolean isExhausted() {
-		return actionsLeft == 0;
+		return stats.actionsLeft == 0;
 	}
 	
 	public int getVisionDistance() {
-		return vision;
+		return vision.range;
+	}
+	
+	public int getInitiative() {
+		return stats.initiative;
 	}
 	
 	public boolean exhaustAction() {
-		actionsLeft -= 1;
-		return actionsLeft == 0;
+		stats.actionsLeft -= 1;
+		return stats.actionsLeft == 0;
 	}
 	
 	public int regainMoves(int spaces, boolean overflow) {
-		int newspeedRemaining = speedRemaining + spaces;
-		if (overflow || newspeedRemaining < maxSpeed) {
-			speedRemaining = newspeedRemaining;
+		int newspeedRemaining = stats.speedRemaining + spaces;
+		if (overflow || newspeedRemaining < stats.maxSpeed) {
+			stats.speedRemaining = newspeedRemaining;
 		} else {
-			speedRemaining = maxSpeed;
+			stats.speedRemaining = stats.maxSpeed;
 		}
 		
-		return speedRemaining;
+		return stats.speedRemaining;
 	}
 	
 	public void refresh() {
-		speedRemaining = maxSpeed;
-		actionsLeft = maxActions;
+		RefreshSystem.refresh(stats);
 	}
 	
 	public int getHealth() {
-		return healthRemaining;
+		return stats.healthRemaining;
 	}
 	
 	public void setHealth(int health) {
-		healthRemaining = health;
+		stats.healthRemaining = health;
 	}
 	
 	public int takeDamage(int damage) {
-		healthRemaining -= damage;
-		if (healthRemaining < 0)
-			healthRemaining = 0;
-		return healthRemaining; 
+		stats.healthRemaining -= damage;
+		if (stats.healthRemaining < 0)
+			stats.healthRemaining = 0;
+		return stats.healthRemaining; 
 	}
 	
 	public int heal(int health, boolean overheal) {
-		int newHealth = healthRemaining + health;
-		if (overheal || newHealth < maxHealth) {
-			healthRemaining = newHealth;
+		int newHealth = stats.healthRemaining + health;
+		if (overheal || newHealth < stats.maxHealth) {
+			stats.healthRemaining = newHealth;
 		} else {
-			healthRemaining = maxHealth;
+			stats.healthRemaining = stats.maxHealth;
 		}
-		return healthRemaining;
+		return stats.healthRemaining;
 	}
 	
 	public void setMovesLeft(int movesLeft) {
-		this.speedRemaining = movesLeft;
+		stats.speedRemaining = movesLeft;
 	}
 	
 	public int handleAttack(AttackAction a) {
-		System.out.println(name + ": ouch! Took " + a.damage + " dmg / " + this.healthRemaining);
-		if (this.takeDamage(a.damage) == 0) {
-			System.out.println(name + ": zoinks! I'm dead");
+		int healthLeft = this.takeDamage(a.damage);
+		GameLog.post(GameLog.Type.DAMAGE, this, null, a.damage, healthLeft);
+		if (healthLeft == 0) {
+			GameLog.post(GameLog.Type.DEATH, this, null, 0, 0);
 			parent.removeCharacter(this);
 		}
 		return a.damage;
 		
 	}
 	
+	/**
+	 * Releases this character's texture and action icons. Call once
+	 * the character is removed from the game for good.
+	 */
+	public void dispose() {
+		Assets.release(sprite.texture);
+		if (actions != null) {
+			for (AttackAction a : actions) {
+				a.dispose();
+			}
+		}
+	}
+	
 	@Override
 	public String toString() {
 		if (this instanceof PlayerActor) {
@@ -5,7 +5,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
 
 /**
@@ -23,6 +22,8 @@ public class CharacterInfo {
 	public int maxSpeed;  // character's max moves per turn
 	public int maxHealth;   // character's starting hp
 	public int vision;  // character sight, in tiles
+	public int initiative;  // who goes first in a turn, highest first
+	public String ai;  // internal path of the behaviour tree enemies of this class plan with, null for RPGAiBasic
 	
 	public List<AttackAction> actions;  // actions a character can make
 	public AttackAction basicAttack;  // the default attack action
@@ -71,6 +72,8 @@ public class CharacterInfo {
 		this.maxSpeed = maxSpeed;
 		this.maxHealth = maxHealth;
 		this.vision = vision;
+		this.initiative = maxSpeed;  // quicker characters go first unless set otherwise
+		this.ai = RPGAiTree.DEFAULT_TREE;
 		
 		this.actions = new ArrayList<>();
 	}
@@ -116,19 +119,21 @@ public class CharacterInfo {
 	}
 	
 	/**
-	 * Gets CharacterInfo for a predefined class
+	 * Gets CharacterInfo for a predefined class. Its texture and action icons
+	 * come from the shared Assets registry, and are released when the
+	 * character made from it is disposed.
 	 * @param classname name of class
 	 * @return CharacterInfo describing class or null
 	 */
 	public static CharacterInfo getCharacterInfo(String classname) {
 		switch (classname) {
 			case "Moblin":
-				CharacterInfo i = new CharacterInfo(new Texture(Gdx.files.internal("data/CharacterSprites/Moblin.png")),
+				CharacterInfo i = new CharacterInfo(Assets.getTexture("data/CharacterSprites/Moblin.png"),
 						"Moblin", 10, 5);
 				i.addActions(AttackAction.getAttack("Slash"));
 				return i;
 			case "SkeletonPunchingBag":
-				CharacterInfo iv = new  CharacterInfo(new Texture(Gdx.files.internal("data/CharacterSprites/SkeletonPunchingBag.png")),
+				CharacterInfo iv = new  CharacterInfo(Assets.getTexture("data/CharacterSprites/SkeletonPunchingBag.png"),
 						"SkeletonPunchingBag", 6, 5);
 				iv.addActions(AttackAction.getAttack("Slash"));
 				return iv;
@@ -0,0 +1,181 @@
+package com.mygdx.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
+import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Draws a CompiledMap a chunk at a time. Cells for a chunk are only made from
+ * the compiled layers the first time it comes into view, and once more than
+ * maxChunks are made the ones drawn longest ago are dropped, so cells for the
+ * whole map never exist at once. Chunks line up with MapInfo's.
+ */
+public class ChunkedMapRenderer extends OrthogonalTiledMapRenderer {
+	public static final int DEFAULT_MAX_CHUNKS = 64;
+
+	/**
+	 * One layer's cells for each compiled layer over a chunk
+	 */
+	private static class RenderChunk {
+		final int chunkX, chunkY;
+		final TiledMapTileLayer[] layers;  // null where a layer has nothing in the chunk
+		long lastDrawn;  // frame, for picking chunks to drop
+
+		RenderChunk(int chunkX, int chunkY, int numLayers) {
+			this.chunkX = chunkX;
+			this.chunkY = chunkY;
+			layers = new TiledMapTileLayer[numLayers];
+		}
+	}
+
+	private final CompiledMap compiled;
+	private final IntMap<Cell> cells;  // cells are never changed, so every tile with the same id and flips shares one
+	private final RenderChunk[][] chunks;  // null until in view
+	private final List<RenderChunk> loaded;
+	private int maxChunks;
+	private long frame;
+
+	/**
+	 * Must be made on the render thread, see CompiledMap.loadTileSets
+	 * @param compiled the map to draw
+	 */
+	public ChunkedMapRenderer(CompiledMap compiled) {
+		super(compiled.loadTileSets());
+		this.compiled = compiled;
+		cells = new IntMap<>();
+		int size = MapInfo.CHUNK_SIZE;
+		chunks = new RenderChunk[(compiled.width + size - 1) / size][(compiled.height + size - 1) / size];
+		loaded = new ArrayList<>();
+		maxChunks = DEFAULT_MAX_CHUNKS;
+	}
+
+	/**
+	 * Sets how many chunks can have cells at once, more than fit on screen
+	 * or chunks will be remade every frame
+	 */
+	public void setMaxChunks(int max) {
+		maxChunks = max;
+	}
+
+	public int getNumLoadedChunks() {
+		return loaded.size();
+	}
+
+	/**
+	 * Draws every visible layer of the chunks in view, layer by layer so
+	 * layers still overlap the same way across chunk edges
+	 */
+	@Override
+	public void render() {
+		frame++;
+		float chunkWidth = MapInfo.CHUNK_SIZE * compiled.tileWidth * unitScale;
+		float chunkHeight = MapInfo.CHUNK_SIZE * compiled.tileHeight * unitScale;
+		int cx0 = Math.max(0, (int) Math.floor(viewBounds.x / chunkWidth));
+		int cy0 = Math.max(0, (int) Math.floor(viewBounds.y / chunkHeight));
+		int cx1 = Math.min(chunks.length - 1, (int) Math.floor((viewBounds.x + viewBounds.width) / chunkWidth));
+		int cy1 = Math.min(chunks[0].length - 1, (int) Math.floor((viewBounds.y + viewBounds.height) / chunkHeight));
+
+		for (int cx = cx0; cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				getChunk(cx, cy).lastDrawn = frame;
+			}
+		}
+
+		beginRender();
+		for (int i = 0; i < compiled.layers.size(); i++) {
+			if (!compiled.layers.get(i).visible) { continue; }
+			for (int cx = cx0; cx <= cx1; cx++) {
+				for (int cy = cy0; cy <= cy1; cy++) {
+					TiledMapTileLayer layer = chunks[cx][cy].layers[i];
+					if (layer != null) {
+						renderTileLayer(layer);
+					}
+				}
+			}
+		}
+		endRender();
+
+		while (loaded.size() > maxChunks && dropChunk()) {}
+	}
+
+	/**
+	 * @return the cells for a chunk, made if this is the first time it's in view
+	 */
+	private RenderChunk getChunk(int cx, int cy) {
+		RenderChunk c = chunks[cx][cy];
+		if (c != null) {
+			return c;
+		}
+		int size = MapInfo.CHUNK_SIZE;
+		int originX = cx * size, originY = cy * size;
+		int width = Math.min(size, compiled.width - originX);
+		int height = Math.min(size, compiled.height - originY);
+		c = new RenderChunk(cx, cy, compiled.layers.size());
+		for (int i = 0; i < compiled.layers.size(); i++) {
+			int[] gids = compiled.layers.get(i).gids;
+			TiledMapTileLayer layer = null;
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					Cell cell = getCell(gids[(originX + x) * compiled.height + originY + y]);
+					if (cell == null) { continue; }
+					if (layer == null) {
+						layer = new TiledMapTileLayer(width, height, compiled.tileWidth, compiled.tileHeight);
+						// Tiled offsets go down
+						layer.setOffsetX(originX * compiled.tileWidth);
+						layer.setOffsetY(-originY * compiled.tileHeight);
+					}
+					layer.setCell(x, y, cell);
+				}
+			}
+			c.layers[i] = layer;
+		}
+		chunks[cx][cy] = c;
+		loaded.add(c);
+		return c;
+	}
+
+	/**
+	 * @return the shared cell for a tile id with its flip flags, or null
+	 * 		if there's no tile
+	 */
+	private Cell getCell(int gid) {
+		if (gid == 0) {
+			return null;
+		}
+		Cell cell = cells.get(gid);
+		if (cell == null) {
+			TiledMapTile tile = map.getTileSets().getTile(CompiledMap.getTileId(gid));
+			if (tile == null) {
+				return null;
+			}
+			cell = CompiledMap.createCell(gid);
+			cell.setTile(tile);
+			cells.put(gid, cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Drops the chunk drawn longest ago, as long as it wasn't drawn this frame
+	 * @return true if a chunk was dropped
+	 */
+	private boolean dropChunk() {
+		RenderChunk oldest = null;
+		for (RenderChunk c : loaded) {
+			if (c.lastDrawn != frame && (oldest == null || c.lastDrawn < oldest.lastDrawn)) {
+				oldest = c;
+			}
+		}
+		if (oldest == null) {
+			return false;
+		}
+		loaded.remove(oldest);
+		chunks[oldest.chunkX][oldest.chunkY] = null;
+		return true;
+	}
+}
@@ -0,0 +1,650 @@
+package com.mygdx.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import com.badlogic.gdx.Files.FileType;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.tiled.BaseTmxMapLoader;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.badlogic.gdx.utils.XmlReader;
+import com.badlogic.gdx.utils.XmlReader.Element;
+
+/**
+ * A Tiled map compiled into a compact binary format so the game doesn't have
+ * to parse xml on every launch. Holds each layer's tile ids, spawn markers from
+ * the marker layer, the composed terrain (cost and walls) and the connected
+ * regions of the map, which can all be used before any chunk is built.
+ *
+ * Maps can be compiled ahead of time by the desktop MapCompiler, otherwise
+ * load() compiles the .tmx on first launch and caches the result next to it.
+ * The file is a header followed by sections, each a tag and its length in
+ * bytes, so the terrain and region caches are optional and readers skip
+ * sections they don't know, i.e. ones added by a newer compiler.
+ */
+public class CompiledMap {
+	public static final String EXTENSION = "hrpm";
+	public static final int MAGIC = 0x4852504D;  // "HRPM"
+	public static final int VERSION = 2;  // 2: sections are length prefixed
+
+	// section tags
+	private static final int TAG_END = 0;
+	private static final int TAG_HEADER = 1;
+	private static final int TAG_TILESET = 2;
+	private static final int TAG_LAYER = 3;
+	private static final int TAG_SPAWNS = 4;
+	private static final int TAG_TERRAIN = 5;
+	private static final int TAG_REGIONS = 6;
+
+	// flags Tiled stores in the top bits of tile ids
+	private static final int FLAG_FLIP_HORIZONTALLY = 0x80000000;
+	private static final int FLAG_FLIP_VERTICALLY = 0x40000000;
+	private static final int FLAG_FLIP_DIAGONALLY = 0x20000000;
+	private static final int MASK_CLEAR = 0xE0000000;
+
+	/**
+	 * Describes a tileset made from a single image
+	 */
+	public static class Tileset {
+		public String name;
+		public int firstGid;
+		public int tileCount;
+		public int tileWidth, tileHeight;
+		public int spacing, margin;
+		public String imagePath;  // relative to the .tmx
+	}
+
+	/**
+	 * A layer of tile ids, indexed by x * height + y with y going up (like the game)
+	 * and 0 for no tile. Ids keep Tiled's flip flags.
+	 */
+	public static class Layer {
+		public String name;
+		public boolean visible;
+		public int[] gids;
+	}
+
+	public int width, height;  // in tiles
+	public int tileWidth, tileHeight;  // in pixels
+	public List<Tileset> tilesets;
+	public List<Layer> layers;  // all layers except markers
+	public int[] spawns;  // x, y, tile id for each marker
+
+	private byte[] cost;  // composed speed to cross, null if not compiled
+	private boolean[] wall;  // composed walls, null if not compiled
+	private int[] regions;  // connected region of each tile (0 for walls), null if not compiled
+	private int tileTypesHash;  // hash of the tile types the terrain was compiled with
+
+	private FileHandle source;  // the .tmx this was compiled from, for finding images
+
+	private CompiledMap() {
+		tilesets = new ArrayList<>();
+		layers = new ArrayList<>();
+		spawns = new int[0];
+	}
+
+	/**
+	 * Loads a map, using a compiled version if there is one newer than the .tmx.
+	 * Otherwise compiles the .tmx and tries to save it for next time.
+	 * @param tmxPath internal path of the .tmx
+	 * @return the compiled map
+	 */
+	public static CompiledMap load(String tmxPath) {
+		FileHandle tmx = Gdx.files.internal(tmxPath);
+		String cachePath = getCachePath(tmxPath);
+		FileHandle[] caches = { Gdx.files.local(cachePath), Gdx.files.internal(cachePath) };
+
+		for (FileHandle cache : caches) {
+			if (cache.exists() && cache.lastModified() >= tmx.lastModified()) {
+				try {
+					CompiledMap m = read(mapFile(cache));
+					if (m.tileTypesHash == MapInfo.getTileTypesHash()) {
+						m.source = tmx;
+						return m;
+					}
+				} catch (IOException | RuntimeException e) {
+					// out of date or corrupt (i.e. truncated, so reads underflow), fall through and recompile
+				}
+			}
+		}
+
+		CompiledMap m = compile(tmx);
+		try {
+			m.write(Gdx.files.local(cachePath));
+		} catch (GdxRuntimeException e) {
+			// caching is best effort, i.e. if the directory is read only
+		}
+		return m;
+	}
+
+	/**
+	 * @param tmxPath path of a .tmx
+	 * @return path of the compiled version of it
+	 */
+	public static String getCachePath(String tmxPath) {
+		int dot = tmxPath.lastIndexOf('.');
+		return (dot < 0 ? tmxPath : tmxPath.substring(0, dot)) + "." + EXTENSION;
+	}
+
+	/**
+	 * Memory maps a file if it is on disk, otherwise reads it all in
+	 */
+	private static ByteBuffer mapFile(FileHandle f) throws IOException {
+		if (f.type() != FileType.Classpath && f.file().exists()) {
+			RandomAccessFile raf = new RandomAccessFile(f.file(), "r");
+			try {
+				return raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+			} finally {
+				raf.close();
+			}
+		}
+		return ByteBuffer.wrap(f.readBytes());
+	}
+
+	/**
+	 * Compiles a .tmx file. Doesn't need a running game (no textures are loaded)
+	 * so can be used by offline tools.
+	 * @param tmxFile the .tmx
+	 * @return the compiled map
+	 */
+	public static CompiledMap compile(FileHandle tmxFile) {
+		XmlReader xml = new XmlReader();
+		Element root = xml.parse(tmxFile);
+
+		CompiledMap m = new CompiledMap();
+		m.source = tmxFile;
+		m.width = root.getIntAttribute("width");
+		m.height = root.getIntAttribute("height");
+		m.tileWidth = root.getIntAttribute("tilewidth");
+		m.tileHeight = root.getIntAttribute("tileheight");
+
+		for (Element element : root.getChildrenByName("tileset")) {
+			Tileset t = new Tileset();
+			t.firstGid = element.getIntAttribute("firstgid", 1);
+			String dir = "";
+			String tsxSource = element.getAttribute("source", null);
+			if (tsxSource != null) {
+				element = xml.parse(resolve(tmxFile.parent(), tsxSource));
+				int slash = tsxSource.lastIndexOf('/');
+				dir = slash < 0 ? "" : tsxSource.substring(0, slash + 1);
+			}
+			Element image = element.getChildByName("image");
+			if (image == null) {
+				throw new GdxRuntimeException("Only single image tilesets can be compiled: " + tmxFile.path());
+			}
+			t.name = element.getAttribute("name", "");
+			t.tileWidth = element.getIntAttribute("tilewidth");
+			t.tileHeight = element.getIntAttribute("tileheight");
+			t.spacing = element.getIntAttribute("spacing", 0);
+			t.margin = element.getIntAttribute("margin", 0);
+			t.imagePath = dir + image.getAttribute("source");
+
+			// same tiles TmxMapLoader cuts out of the image
+			int columns = (image.getIntAttribute("width") - t.tileWidth - t.margin) / (t.tileWidth + t.spacing) + 1;
+			int rows = (image.getIntAttribute("height") - t.tileHeight - t.margin) / (t.tileHeight + t.spacing) + 1;
+			t.tileCount = columns * rows;
+			m.tilesets.add(t);
+		}
+
+		for (Element element : root.getChildrenByName("layer")) {
+			int[] ids = BaseTmxMapLoader.getTileIds(element, m.width, m.height);
+			int[] gids = new int[m.width * m.height];
+			for (int x = 0; x < m.width; x++) {
+				for (int y = 0; y < m.height; y++) {
+					gids[x * m.height + y] = ids[(m.height - 1 - y) * m.width + x];  // Tiled's y goes down
+				}
+			}
+
+			String name = element.getAttribute("name", "");
+			if (name.equals(MapInfo.MARKER_LAYER)) {
+				m.spawns = m.findSpawns(gids);
+			} else {
+				Layer l = new Layer();
+				l.name = name;
+				l.visible = element.getIntAttribute("visible", 1) == 1;
+				l.gids = gids;
+				m.layers.add(l);
+			}
+		}
+
+		m.compileTerrain();
+		m.compileRegions();
+		return m;
+	}
+
+	/**
+	 * Resolves a path relative to a directory, handling ".."
+	 */
+	private static FileHandle resolve(FileHandle dir, String path) {
+		FileHandle result = dir;
+		StringTokenizer tokenizer = new StringTokenizer(path, "\\/");
+		while (tokenizer.hasMoreTokens()) {
+			String token = tokenizer.nextToken();
+			result = token.equals("..") ? result.parent() : result.child(token);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if a tile id belongs to one of this map's tilesets
+	 */
+	private boolean hasTile(int gid) {
+		gid &= ~MASK_CLEAR;
+		for (Tileset t : tilesets) {
+			if (gid >= t.firstGid && gid < t.firstGid + t.tileCount) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param gids the marker layer
+	 * @return x, y, tile id for every marker that is a real tile
+	 */
+	private int[] findSpawns(int[] gids) {
+		List<Integer> found = new ArrayList<>();
+		for (int i = 0; i < gids.length; i++) {
+			if (gids[i] != 0 && hasTile(gids[i])) {
+				found.add(i / height);
+				found.add(i % height);
+				found.add(gids[i] & ~MASK_CLEAR);
+			}
+		}
+		int[] s = new int[found.size()];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = found.get(i);
+		}
+		return s;
+	}
+
+	/**
+	 * Composes all layers into cost and wall arrays using the same rules as
+	 * MapChunk: highest cost of any tile and a wall if any tile is a wall.
+	 */
+	private void compileTerrain() {
+		cost = new byte[width * height];
+		wall = new boolean[width * height];
+		for (Layer l : layers) {
+			for (int i = 0; i < l.gids.length; i++) {
+				int gid = l.gids[i] & ~MASK_CLEAR;
+				MapInfo.TileType t = gid == 0 || !hasTile(gid) ? null : MapInfo.getTileType(gid);
+				if (t != null) {
+					cost[i] = (byte) Math.max(cost[i], t.speedToCross);
+					wall[i] = wall[i] || t.isWall;
+				}
+			}
+		}
+		tileTypesHash = MapInfo.getTileTypesHash();
+	}
+
+	/**
+	 * Labels every group of connected non-wall tiles (including diagonals,
+	 * like Wayfinder) with its own id. Walls get 0.
+	 */
+	private void compileRegions() {
+		regions = new int[width * height];
+		int[] queue = new int[width * height];
+		int nextRegion = 1;
+
+		for (int start = 0; start < regions.length; start++) {
+			if (wall[start] || regions[start] != 0) { continue; }
+
+			int head = 0, tail = 0;
+			queue[tail++] = start;
+			regions[start] = nextRegion;
+			while (head < tail) {
+				int i = queue[head++];
+				int x = i / height, y = i % height;
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						int nx = x + dx, ny = y + dy;
+						if (nx < 0 || ny < 0 || nx >= width || ny >= height) { continue; }
+						int n = nx * height + ny;
+						if (!wall[n] && regions[n] == 0) {
+							regions[n] = nextRegion;
+							queue[tail++] = n;
+						}
+					}
+				}
+			}
+			nextRegion++;
+		}
+	}
+
+	/**
+	 * @return internal paths of every tileset image this map uses
+	 */
+	public List<String> getTexturePaths() {
+		List<String> paths = new ArrayList<>();
+		for (Tileset t : tilesets) {
+			paths.add(resolve(source.parent(), t.imagePath).path());
+		}
+		return paths;
+	}
+
+	/**
+	 * Builds the tilesets for drawing this map, in a TiledMap with no layers
+	 * since ChunkedMapRenderer makes cells a chunk at a time. Gets textures from
+	 * Assets (loading them if they haven't been streamed in already) so must be
+	 * called on the render thread.
+	 * @return the tilesets, whose textures are released by releaseTextures
+	 */
+	public TiledMap loadTileSets() {
+		TiledMap map = new TiledMap();
+		map.getProperties().put("width", width);
+		map.getProperties().put("height", height);
+		map.getProperties().put("tilewidth", tileWidth);
+		map.getProperties().put("tileheight", tileHeight);
+
+		List<String> paths = getTexturePaths();
+		for (int i = 0; i < tilesets.size(); i++) {
+			Tileset t = tilesets.get(i);
+			Texture texture = Assets.getTexture(paths.get(i));
+			texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+
+			TiledMapTileSet set = new TiledMapTileSet();
+			set.setName(t.name);
+			int id = t.firstGid;
+			for (int y = t.margin; y <= texture.getHeight() - t.tileHeight; y += t.tileHeight + t.spacing) {
+				for (int x = t.margin; x <= texture.getWidth() - t.tileWidth; x += t.tileWidth + t.spacing) {
+					StaticTiledMapTile tile = new StaticTiledMapTile(
+							new TextureRegion(texture, x, y, t.tileWidth, t.tileHeight));
+					tile.setId(id);
+					set.putTile(id++, tile);
+				}
+			}
+			map.getTileSets().addTileSet(set);
+		}
+		return map;
+	}
+
+	/**
+	 * Releases the tileset textures taken by toTiledMap
+	 */
+	public void releaseTextures() {
+		for (String path : getTexturePaths()) {
+			Assets.release(path);
+		}
+	}
+
+	/**
+	 * @param gid a tile id from a layer
+	 * @return the id without Tiled's flip flags, as used by tilesets and TileInfo
+	 */
+	public static int getTileId(int gid) {
+		return gid & ~MASK_CLEAR;
+	}
+
+	/**
+	 * Makes a cell flipped/rotated the same way TmxMapLoader would
+	 */
+	static Cell createCell(int gid) {
+		boolean flipH = (gid & FLAG_FLIP_HORIZONTALLY) != 0;
+		boolean flipV = (gid & FLAG_FLIP_VERTICALLY) != 0;
+		Cell cell = new Cell();
+		if ((gid & FLAG_FLIP_DIAGONALLY) != 0) {
+			if (flipH && flipV) {
+				cell.setFlipHorizontally(true);
+				cell.setRotation(Cell.ROTATE_270);
+			} else if (flipH) {
+				cell.setRotation(Cell.ROTATE_270);
+			} else if (flipV) {
+				cell.setRotation(Cell.ROTATE_90);
+			} else {
+				cell.setFlipVertically(true);
+				cell.setRotation(Cell.ROTATE_270);
+			}
+		} else {
+			cell.setFlipHorizontally(flipH);
+			cell.setFlipVertically(flipV);
+		}
+		return cell;
+	}
+
+	/**
+	 * @return if terrain was compiled with the current tile types
+	 */
+	public boolean hasTerrain() {
+		return cost != null && tileTypesHash == MapInfo.getTileTypesHash();
+	}
+
+	public int getCost(int x, int y) {
+		return cost[x * height + y];
+	}
+
+	public boolean isWall(int x, int y) {
+		return wall[x * height + y];
+	}
+
+	/**
+	 * @return the connected region of a tile, 0 for walls, or -1 if regions
+	 * 		weren't compiled
+	 */
+	public int getRegion(int x, int y) {
+		return regions == null ? -1 : regions[x * height + y];
+	}
+
+	/**
+	 * Writes this map in the binary format. Goes through a temporary file which
+	 * replaces the old one once it's complete, so a crash partway through never
+	 * leaves a truncated map behind.
+	 * @param file file to write to
+	 */
+	public void write(FileHandle file) {
+		FileHandle temp = file.sibling(file.name() + ".tmp");
+		DataOutputStream out = new DataOutputStream(temp.write(false, 64 * 1024));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+		DataOutputStream section = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			section.writeInt(width);
+			section.writeInt(height);
+			section.writeInt(tileWidth);
+			section.writeInt(tileHeight);
+			writeSection(out, TAG_HEADER, bytes);
+
+			for (Tileset t : tilesets) {
+				writeString(section, t.name);
+				section.writeInt(t.firstGid);
+				section.writeInt(t.tileCount);
+				section.writeInt(t.tileWidth);
+				section.writeInt(t.tileHeight);
+				section.writeInt(t.spacing);
+				section.writeInt(t.margin);
+				writeString(section, t.imagePath);
+				writeSection(out, TAG_TILESET, bytes);
+			}
+
+			for (Layer l : layers) {
+				writeString(section, l.name);
+				section.writeBoolean(l.visible);
+				// run length encoded, most layers are big runs of the same tile
+				int i = 0;
+				while (i < l.gids.length) {
+					int run = 1;
+					while (i + run < l.gids.length && l.gids[i + run] == l.gids[i]) {
+						run++;
+					}
+					section.writeInt(run);
+					section.writeInt(l.gids[i]);
+					i += run;
+				}
+				writeSection(out, TAG_LAYER, bytes);
+			}
+
+			section.writeInt(spawns.length / 3);
+			for (int s : spawns) {
+				section.writeInt(s);
+			}
+			writeSection(out, TAG_SPAWNS, bytes);
+
+			if (cost != null) {
+				section.writeInt(tileTypesHash);
+				section.write(cost);
+				for (int i = 0; i < wall.length; i += 8) {
+					int bits = 0;
+					for (int b = 0; b < 8 && i + b < wall.length; b++) {
+						if (wall[i + b]) { bits |= 1 << b; }
+					}
+					section.writeByte(bits);
+				}
+				writeSection(out, TAG_TERRAIN, bytes);
+			}
+
+			if (regions != null) {
+				for (int r : regions) {
+					section.writeInt(r);
+				}
+				writeSection(out, TAG_REGIONS, bytes);
+			}
+
+			out.writeInt(TAG_END);
+			out.close();
+			temp.moveTo(file);
+		} catch (IOException | GdxRuntimeException e) {
+			StreamUtils.closeQuietly(out);
+			temp.delete();
+			throw new GdxRuntimeException("Couldn't write compiled map " + file.path(), e);
+		}
+	}
+
+	/**
+	 * Writes a section's tag and length then the section, emptying it for the next
+	 */
+	private static void writeSection(DataOutputStream out, int tag, ByteArrayOutputStream section)
+			throws IOException {
+		out.writeInt(tag);
+		out.writeInt(section.size());
+		section.writeTo(out);
+		section.reset();
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a map in the binary format
+	 * @param in buffer positioned at the start of the map
+	 * @return the map
+	 * @throws IOException if it isn't a compiled map of this version. A corrupt or
+	 * 		truncated one may instead throw a RuntimeException like BufferUnderflowException.
+	 */
+	public static CompiledMap read(ByteBuffer in) throws IOException {
+		if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+			throw new IOException("Not a compiled map or wrong version");
+		}
+
+		CompiledMap m = new CompiledMap();
+		int tag;
+		while ((tag = in.getInt()) != TAG_END) {
+			int length = in.getInt();
+			if (length < 0 || length > in.remaining()) {
+				throw new IOException("Section " + tag + " runs past the end of the file");
+			}
+			int end = in.position() + length;
+			// read from a view of just this section, so a bad one can't run into the next
+			ByteBuffer section = in.slice();
+			section.limit(length);
+			m.readSection(tag, section);
+			in.position(end);
+		}
+		return m;
+	}
+
+	/**
+	 * Reads one section into this map, skipping sections it doesn't know
+	 */
+	private void readSection(int tag, ByteBuffer in) throws IOException {
+		switch (tag) {
+			case TAG_HEADER:
+				width = in.getInt();
+				height = in.getInt();
+				tileWidth = in.getInt();
+				tileHeight = in.getInt();
+				break;
+			case TAG_TILESET:
+				Tileset t = new Tileset();
+				t.name = readString(in);
+				t.firstGid = in.getInt();
+				t.tileCount = in.getInt();
+				t.tileWidth = in.getInt();
+				t.tileHeight = in.getInt();
+				t.spacing = in.getInt();
+				t.margin = in.getInt();
+				t.imagePath = readString(in);
+				tilesets.add(t);
+				break;
+			case TAG_LAYER:
+				Layer l = new Layer();
+				l.name = readString(in);
+				l.visible = in.get() != 0;
+				l.gids = new int[width * height];
+				int i = 0;
+				while (i < l.gids.length) {
+					int run = in.getInt();
+					int gid = in.getInt();
+					if (run <= 0 || run > l.gids.length - i) {
+						throw new IOException("Bad run of " + run + " tiles in layer " + l.name);
+					}
+					for (int end = i + run; i < end; i++) {
+						l.gids[i] = gid;
+					}
+				}
+				layers.add(l);
+				break;
+			case TAG_SPAWNS:
+				spawns = new int[in.getInt() * 3];
+				for (int s = 0; s < spawns.length; s++) {
+					spawns[s] = in.getInt();
+				}
+				break;
+			case TAG_TERRAIN:
+				tileTypesHash = in.getInt();
+				cost = new byte[width * height];
+				in.get(cost);
+				wall = new boolean[width * height];
+				for (int w = 0; w < wall.length; w += 8) {
+					int bits = in.get();
+					for (int b = 0; b < 8 && w + b < wall.length; b++) {
+						wall[w + b] = (bits & (1 << b)) != 0;
+					}
+				}
+				break;
+			case TAG_REGIONS:
+				regions = new int[width * height];
+				in.asIntBuffer().get(regions);
+				break;
+			default:
+				// written by a newer compiler, the length lets it be skipped
+				break;
+		}
+	}
+
+	private static String readString(ByteBuffer in) throws IOException {
+		byte[] bytes = new byte[in.getShort() & 0xFFFF];
+		in.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
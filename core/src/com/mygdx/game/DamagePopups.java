@@ -0,0 +1,108 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.scenes.scene2d.Action;
+import com.badlogic.gdx.scenes.scene2d.Group;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.actions.Actions;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Shows floating damage numbers over characters. The skin is loaded once,
+ * labels are reused, and the actions animating them come from libGDX's
+ * action pools. All popups are children of one group so they draw one after
+ * another with the same font texture, which keeps many popups at once
+ * (i.e. from an area attack) in a single batch.
+ */
+public class DamagePopups {
+	public static final String SKIN_PATH = "data/UiData/uiskin.json";
+	public static final float DURATION = 1.2f;  // how long a popup stays up, in seconds
+	
+	private Skin skin;
+	private Group layer;  // holds every popup on screen
+	private Pool<Label> labelPool;
+	
+	/**
+	 * Frees a popup's label back to the pool once it's done, pooled itself
+	 * through Actions.action
+	 */
+	public static class FreePopupAction extends Action {
+		DamagePopups popups;
+		
+		@Override
+		public boolean act(float delta) {
+			Label label = (Label) getActor();
+			label.remove();
+			popups.labelPool.free(label);
+			return true;
+		}
+		
+		@Override
+		public void reset() {
+			super.reset();
+			popups = null;
+		}
+	}
+	
+	/**
+	 * @param stage stage to show popups on
+	 */
+	public DamagePopups(RPGStage stage) {
+		skin = Assets.getSkin(SKIN_PATH);
+		layer = new Group();
+		layer.setTransform(false);
+		layer.setTouchable(Touchable.disabled);
+		stage.addActor(layer);
+		
+		labelPool = new Pool<Label>() {
+			@Override
+			protected Label newObject() {
+				Label l = new Label("", skin);
+				l.setTouchable(Touchable.disabled);
+				return l;
+			}
+			
+			@Override
+			protected void reset(Label l) {
+				// actions finish up on their own, since this is called while they run
+				l.getColor().a = 1;
+			}
+		};
+	}
+	
+	/**
+	 * Shows a damage number floating up from a character
+	 * @param target the character hit
+	 * @param damage text to show
+	 */
+	public void show(CharacterActor target, String damage) {
+		int textOffset = damage.length() * 5;
+		
+		int xOffset = RPGStage.TILE_SIZE / 2 - textOffset;
+		int yOffset = RPGStage.TILE_SIZE / 4 * 3;
+		
+		Label dmgNumber = labelPool.obtain();
+		dmgNumber.clearActions();
+		dmgNumber.setText(damage);
+		dmgNumber.pack();
+		dmgNumber.setPosition(target.getX()+xOffset, target.getY() + yOffset);
+		
+		FreePopupAction free = Actions.action(FreePopupAction.class);
+		free.popups = this;
+		
+		dmgNumber.addAction(Actions.moveBy(0f, yOffset/2f, DURATION));
+		dmgNumber.addAction(Actions.delay(DURATION / 2, Actions.fadeOut(.55f)));
+		dmgNumber.addAction(Actions.delay(DURATION, free));
+		
+		layer.addActor(dmgNumber);
+		layer.toFront();
+	}
+	
+	/**
+	 * Releases the shared skin
+	 */
+	public void dispose() {
+		Assets.release(skin);
+	}
+}
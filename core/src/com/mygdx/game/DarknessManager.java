@@ -1,29 +1,85 @@
 package com.mygdx.game;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Blending;
+import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
-import com.mygdx.game.ActionProperties.CanMoveThrough;
-import com.mygdx.game.ActionProperties.CanSelect;
-import com.mygdx.game.ActionProperties.EffectedByDarkness;
-import com.mygdx.game.ActionProperties.EffectedByTerrain;
+import com.badlogic.gdx.utils.Array;
 
 /**
  * Manages the mechanics of darkness / fog of war, providing an API
  * to add/remove tiles of darkness. Tiles are added both to display and 
- * MapInfo
+ * MapInfo. Each team has its own TeamVision tracking what it sees right now;
+ * tiles the player has explored but can't currently see are drawn with 
+ * lighter fog. Darkness is drawn from textures with one texel per tile,
+ * each covering a FOG_PAGE square of the map so no texture goes past the
+ * GL's size limit however big the map. Pages are only made once they're
+ * on screen, and only rows of a page that have changed since the last
+ * frame are re-uploaded.
  */
 public class DarknessManager {
-	private final Texture darknessTexture;
-	Map<Vector2, Actor> darknessTiles;
+	public static final int FOG_PAGE = 256;  // tiles along each side of a fog texture, well under any GL_MAX_TEXTURE_SIZE
+	
+	/**
+	 * The fog over one square of the map
+	 */
+	private static class FogPage {
+		final int x0, y0, width, height;  // tiles covered
+		final Pixmap pixels;  // one pixel per tile, y flipped so row 0 is the top of the page
+		final Texture texture;  // gpu copy of pixels
+		int dirtyMinY, dirtyMaxY;  // range of map rows that need re-uploading, min > max if none
+		
+		FogPage(int x0, int y0, int width, int height) {
+			this.x0 = x0;
+			this.y0 = y0;
+			this.width = width;
+			this.height = height;
+			pixels = new Pixmap(width, height, Format.RGBA8888);
+			pixels.setBlending(Blending.None);
+			texture = new Texture(pixels);
+			texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+			markAllDirty();
+		}
+		
+		void markAllDirty() {
+			dirtyMinY = y0;
+			dirtyMaxY = y0 + height - 1;
+		}
+	}
+	
+	private Color darknessColor;  // color of a dark tile, taken from the darkness sprite
+	private FogPage[] fogPages;  // indexed page x * pagesHigh + page y, null until first on screen
+	private int pagesWide, pagesHigh;
+	
+	public static final int MAX_CACHED_VIEWS = 1024;  // observer positions to remember sight from
+	private Map<Long, Set<Vector2>> viewCache;  // tiles seen from a position and range, least recently used first
+	private int viewCacheWallVersion;  // map wall version the cache was built for
+	private Map<CharacterActor, FieldOfView> views;  // what each observer saw when darkness was last cleared
+	private final Array<Vector2> entered = new Array<>();  // reused, tiles an observer's view gained
+	private final Array<Vector2> left = new Array<>();  // reused, tiles an observer's view lost
+	
+	private static final Profiler.Timer darknessTimer = Profiler.timer("darkness");
+	private static final Profiler.Timer fogTimer = Profiler.timer("fog upload");
+	private TeamVision playerVision;
+	private TeamVision enemyVision;
+	Actor darknessLayer;  // draws all darkness on screen
 	RPGStage parentStage;
 	
 	/**
@@ -32,12 +88,22 @@ public class DarknessManager {
 	 */
 	public DarknessManager(RPGStage parent) {
 		this.parentStage = parent;
-		darknessTiles = new HashMap<>();
-		if (RPG.DEBUG) {
-			darknessTexture = new Texture(Gdx.files.internal("data/MiscSprites/darknessDebug.png"));
-		} else {
-			darknessTexture = new Texture(Gdx.files.internal("data/MiscSprites/darkness.png"));
-		}
+		Pixmap sprite = new Pixmap(Gdx.files.internal(RPG.DEBUG ? 
+				"data/MiscSprites/darknessDebug.png" : "data/MiscSprites/darkness.png"));
+		darknessColor = new Color(sprite.getPixel(sprite.getWidth() / 2, sprite.getHeight() / 2));
+		sprite.dispose();
+		
+		viewCache = new LinkedHashMap<Long, Set<Vector2>>(16, .75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Set<Vector2>> eldest) {
+				return size() > MAX_CACHED_VIEWS;
+			}
+		};
+		views = new HashMap<>();
+		
+		MapInfo map = RPG.getCurrentMapInfo();
+		playerVision = new TeamVision(map.getWidth(), map.getHeight());
+		enemyVision = new TeamVision(map.getWidth(), map.getHeight());
 	}
 	
 	/**
@@ -51,68 +117,264 @@ public class DarknessManager {
 	}
 	
 	/**
-	 * Given a character, clears darkness over its position as well as all
-	 * tiles within its line of sight
+	 * Given a character, updates what its team can see from its position, clearing
+	 * darkness on all tiles within its line of sight. Only tiles that came into or 
+	 * went out of the character's view since it was last updated are touched, and
+	 * a step to a neighbouring tile only traces the tiles whose sight could change
+	 * (see FieldOfView).
 	 * @param p the Character
 	 */
 	public void clearDarkness(CharacterActor p) {
-		int range = p.getVisionDistance();
-		removeDarkness(p.getCell());
-		Set<Vector2> toClear = Wayfinder.getAllSelectableTiles2(
-				 p, p.getCell(), range, RPG.getCurrentMapInfo(), new ActionProperties(
-						 EffectedByDarkness.IGNORE, EffectedByTerrain.IGNORE_TERRAIN,
-						 CanSelect.WALLS, CanSelect.ENEMY, CanSelect.TILE,
-						 CanMoveThrough.CHARACTER)).keySet();
-		 toClear.removeAll(Wayfinder.getAllOutOfSight(p.getCell(), toClear, RPG.getCurrentMapInfo()));
-		 for (Vector2 v : toClear) {
-			 removeDarkness(v);
-		 }
+		darknessTimer.begin();
+		TeamVision vision = getVision(p);
+		boolean player = vision == playerVision;
+		FieldOfView view = views.get(p);
+		if (view == null) {
+			view = new FieldOfView();
+			views.put(p, view);
+		}
+		entered.clear();
+		left.clear();
+		view.look((int) p.getCell().x, (int) p.getCell().y, p.getVisionDistance(),
+				RPG.getCurrentMapInfo(), entered, left);
+		boolean cleared = false;
+		
+		for (Vector2 v : entered) {
+			if (vision.addSight(v) && player) {
+				markDirty((int) v.x, (int) v.y);
+			}
+			if (player && removeDarkness(v)) {
+				cleared = true;
+			}
+		}
+		for (Vector2 v : left) {
+			loseSight(vision, v);
+		}
+		if (cleared) {
+			parentStage.getEngine().getSystem(InfluenceSystem.class).darknessChanged();
+		}
+		darknessTimer.end();
 	}
 	
 	/**
-	  * Removes darkness tiles from a specific position, both visually and from mapInfo
+	 * Stops tracking what a character sees, i.e. once it's removed from the map.
+	 * Tiles only it could see go back into fog.
+	 * @param p the Character
+	 */
+	public void forgetObserver(CharacterActor p) {
+		FieldOfView view = views.remove(p);
+		if (view != null) {
+			TeamVision vision = getVision(p);
+			for (Vector2 v : view.getSeen()) {
+				loseSight(vision, v);
+			}
+		}
+	}
+	
+	private void loseSight(TeamVision vision, Vector2 v) {
+		if (vision.removeSight(v) && vision == playerVision) {
+			markDirty((int) v.x, (int) v.y);
+		}
+	}
+	
+	/**
+	 * @param c a character
+	 * @return vision for the character's team
+	 */
+	public TeamVision getVision(CharacterActor c) {
+		return c instanceof PlayerActor ? playerVision : enemyVision;
+	}
+	
+	public TeamVision getPlayerVision() {
+		return playerVision;
+	}
+	
+	public TeamVision getEnemyVision() {
+		return enemyVision;
+	}
+	
+	/**
+	 * @return true if the player's team can currently see the tile
+	 */
+	public boolean isVisible(Vector2 v) {
+		return darknessLayer == null || playerVision.isVisible(v);
+	}
+	
+	public boolean isVisible(int x, int y) {
+		return darknessLayer == null || playerVision.isVisible(x, y);
+	}
+	
+	/**
+	 * Gets every tile that can be seen from a tile, see FieldOfView. Sight only
+	 * depends on walls, so results are cached per position and range until walls
+	 * change. Observers clearing darkness don't go through here, they keep their
+	 * own FieldOfView that only works out what a step changed.
+	 * @param cell the tile being seen from
+	 * @param range how far can be seen, in tiles
+	 * @return tiles in sight, including cell. Shared with the cache so shouldn't be changed
+	 */
+	public Set<Vector2> getVisibleTiles(Vector2 cell, int range) {
+		MapInfo map = RPG.getCurrentMapInfo();
+		if (viewCacheWallVersion != map.getWallVersion()) {
+			viewCache.clear();
+			viewCacheWallVersion = map.getWallVersion();
+		}
+		
+		long key = ((long) range << 32) | ((int) cell.x * map.getHeight() + (int) cell.y);
+		Set<Vector2> seen = viewCache.get(key);
+		if (seen == null) {
+			seen = FieldOfView.compute(cell, range, map);
+			viewCache.put(key, seen);
+		}
+		return seen;
+	}
+	
+	/**
+	  * Removes darkness tiles from a specific position. Since darkness is drawn
+	  * from mapInfo this also removes it visually
 	  * @param position tile to remove darkness from
 	  * @return true if darkness tile was removed, false if not (wasn't darkness to begin with)
 	  */
 	 private boolean removeDarkness(Vector2 position) {
-		 if (darknessTiles.containsKey(position)) {
-			 RPG.getCurrentMapInfo().removeDarkness(position);
-			 Actor d = darknessTiles.get(position);
-			 darknessTiles.remove(position);
-			 d.remove();
-			 d.clear();
+		 if (RPG.getCurrentMapInfo().removeDarkness(position)) {
+			 markDirty((int) position.x, (int) position.y);
 			 return true;
 		 }
 		 return false;
 	 }
 	 
 	 /**
-	  * Adds darkness tiles to the entire map, updating mapInfo and adding darkness tiles over
-	  * entire visual map
-	  * @param map
+	  * Marks a tile as needing its darkness re-uploaded, if its page has been made
+	  */
+	 private void markDirty(int x, int y) {
+		 if (fogPages == null) { return; }
+		 FogPage page = fogPages[(x / FOG_PAGE) * pagesHigh + y / FOG_PAGE];
+		 if (page != null) {
+			 page.dirtyMinY = Math.min(page.dirtyMinY, y);
+			 page.dirtyMaxY = Math.max(page.dirtyMaxY, y);
+		 }
+	 }
+	 
+	 /**
+	  * Copies darkness for a page's dirty rows from mapInfo into its texture.
+	  * GL ES 2 can't upload part of a row, so whole rows of the page are sent.
+	  */
+	 private void updateFog(FogPage page) {
+		 if (page.dirtyMinY > page.dirtyMaxY) {
+			 return;
+		 }
+		 fogTimer.begin();
+		 MapInfo map = RPG.getCurrentMapInfo();
+		 int clear = Color.rgba8888(Color.CLEAR);
+		 int dark = Color.rgba8888(darknessColor);
+		 int fog = Color.rgba8888(darknessColor.r, darknessColor.g, darknessColor.b, darknessColor.a / 2);
+		 int top = page.y0 + page.height - 1;
+		 int minY = Math.max(page.y0, page.dirtyMinY);
+		 int maxY = Math.min(top, page.dirtyMaxY);
+		 
+		 for (int y = minY; y <= maxY; y++) {
+			 for (int x = page.x0; x < page.x0 + page.width; x++) {
+				 int color = clear;
+				 if (map.isDarkness(x, y)) {
+					 color = dark;
+				 } else if (!playerVision.isVisible(x, y)) {
+					 color = fog;  // explored, but no one is looking
+				 }
+				 page.pixels.drawPixel(x - page.x0, top - y, color);
+			 }
+		 }
+		 
+		 // rows are flipped, so the top dirty row of the map is the first in the pixmap
+		 int firstRow = top - maxY;
+		 int rows = maxY - minY + 1;
+		 ByteBuffer pixels = page.pixels.getPixels();
+		 pixels.position(firstRow * page.width * 4);
+		 page.texture.bind();
+		 Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, firstRow, page.width, rows,
+				 GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, pixels);
+		 pixels.position(0);
+		 
+		 page.dirtyMinY = Integer.MAX_VALUE;
+		 page.dirtyMaxY = -1;
+		 fogTimer.end();
+	 }
+	 
+	 /**
+	  * Draws the pages of fog the camera can see, making any that don't exist yet
+	  */
+	 private void drawFog(Batch batch) {
+		 OrthographicCamera cam = (OrthographicCamera) parentStage.getCamera();
+		 float halfWidth = cam.viewportWidth * cam.zoom / 2;
+		 float halfHeight = cam.viewportHeight * cam.zoom / 2;
+		 float pageSize = FOG_PAGE * RPGStage.TILE_SIZE;
+		 int minX = Math.max(0, MathUtils.floor((cam.position.x - halfWidth) / pageSize));
+		 int maxX = Math.min(pagesWide - 1, MathUtils.floor((cam.position.x + halfWidth) / pageSize));
+		 int minY = Math.max(0, MathUtils.floor((cam.position.y - halfHeight) / pageSize));
+		 int maxY = Math.min(pagesHigh - 1, MathUtils.floor((cam.position.y + halfHeight) / pageSize));
+		 
+		 MapInfo map = RPG.getCurrentMapInfo();
+		 for (int px = minX; px <= maxX; px++) {
+			 for (int py = minY; py <= maxY; py++) {
+				 FogPage page = fogPages[px * pagesHigh + py];
+				 if (page == null) {
+					 int x0 = px * FOG_PAGE;
+					 int y0 = py * FOG_PAGE;
+					 page = new FogPage(x0, y0, Math.min(FOG_PAGE, map.getWidth() - x0),
+							 Math.min(FOG_PAGE, map.getHeight() - y0));
+					 fogPages[px * pagesHigh + py] = page;
+				 }
+				 updateFog(page);
+				 batch.draw(page.texture, page.x0 * RPGStage.TILE_SIZE, page.y0 * RPGStage.TILE_SIZE,
+						 page.width * RPGStage.TILE_SIZE, page.height * RPGStage.TILE_SIZE);
+			 }
+		 }
+	 }
+	 
+	 /**
+	  * Adds darkness tiles to the entire map, updating mapInfo and adding an actor
+	  * that draws the fog over the visual map. The actor is only made once.
 	  */
 	 public void addDarknessToMap() {
-		 Vector2 bounds = RPG.getCurrentMapInfo().getMapSize();
+		 MapInfo map = RPG.getCurrentMapInfo();
+		 map.addDarkness();
+		 views.clear();  // everything has to be cleared again
+		 playerVision.clear();
+		 enemyVision.clear();
+		 parentStage.getEngine().getSystem(InfluenceSystem.class).darknessChanged();
+		 if (darknessLayer != null) {
+			 for (FogPage page : fogPages) {
+				 if (page != null) {
+					 page.markAllDirty();
+				 }
+			 }
+			 return;
+		 }
 		 
-		 for (int x = 0; x < bounds.x; x++) {
-			 for (int y = 0; y < bounds.y; y++) {
-				 Actor darkness = new Actor() {
-					 Texture texture = darknessTexture;
-					
-					 @Override
-					 public void draw(Batch batch, float alpha) {
-						 batch.draw(texture,  getX(),  getY());
-					 }
-					
-				 };
-				 darkness.setBounds(darkness.getX(), darkness.getY(),
-						 darknessTexture.getWidth(), darknessTexture.getHeight());
-				 darkness.setPosition(x * RPGStage.TILE_SIZE, y * RPGStage.TILE_SIZE);
-				 darkness.setTouchable(Touchable.disabled);
-				 darknessTiles.put(new Vector2(x,y), darkness);
-				 parentStage.addActor(darkness);
-				 RPG.getCurrentMapInfo().addDarkness(); 
-			}
-		}
+		 pagesWide = (map.getWidth() + FOG_PAGE - 1) / FOG_PAGE;
+		 pagesHigh = (map.getHeight() + FOG_PAGE - 1) / FOG_PAGE;
+		 fogPages = new FogPage[pagesWide * pagesHigh];
+		 
+		 darknessLayer = new Actor() {
+			 @Override
+			 public void draw(Batch batch, float alpha) {
+				 drawFog(batch);
+			 }
+		 };
+		 darknessLayer.setTouchable(Touchable.disabled);
+		 parentStage.addActor(darknessLayer);
 	}
+	 
+	 /**
+	  * Frees the fog textures
+	  */
+	 public void dispose() {
+		 if (fogPages == null) { return; }
+		 for (FogPage page : fogPages) {
+			 if (page != null) {
+				 page.texture.dispose();
+				 page.pixels.dispose();
+			 }
+		 }
+		 fogPages = null;
+	 }
 }
@@ -1,11 +1,8 @@
 package com.mygdx.game;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
@@ -15,10 +12,10 @@ import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
-import com.badlogic.gdx.scenes.scene2d.actions.Actions;
 import com.badlogic.gdx.scenes.scene2d.actions.MoveToAction;
-import com.badlogic.gdx.scenes.scene2d.ui.Label;
-import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
 import com.mygdx.game.Strategy.MoveStep;
 import com.mygdx.game.Strategy.Step;
 
@@ -37,21 +34,42 @@ public class EffectsManager {
 	Vector2 lastCellMousedOver;  // last tile mouse was over
 	Strategy displayStrategy;  // strategy to display
 	
-	Set<SelectableActionActor> selectableTiles;  // overlay tiles for player selection
-	Set<Actor> stepTiles;  // overlay tiles for showing strategy
+	OverlayLayer selectableTiles;  // overlay tiles for player selection
+	PathTree moveTree;  // paths to every move tile shown, for previewing without searching
+	Array<Actor> stepTiles;  // overlay tiles for showing strategy
+	private final IntArray areaTiles = new IntArray();  // reused by displayArea
 	Map<EffectType, Texture> textureMap;  // save texture for each effect
 	
+	// step actors are reused so showing/clearing them makes no garbage
+	private Pool<Actor> stepPool;
+	private DamagePopups damagePopups;
+	
 	
 	public EffectsManager(RPGStage parent) {
 		this.parentStage = parent;
 		
-		selectableTiles = new HashSet<>();
-		stepTiles = new HashSet<>();
+		stepTiles = new Array<>();
 		textureMap = new HashMap<>();
 		lastCellMousedOver = null;
 		
 		loadTextures();
 		setupCursor();
+		
+		MapInfo map = RPG.getCurrentMapInfo();
+		selectableTiles = new OverlayLayer(map.getWidth(), map.getHeight(),
+				textureMap.get(EffectType.MOVE_CHOICE), textureMap.get(EffectType.ATTACK_CHOICE));
+		parentStage.addActor(selectableTiles);
+		moveTree = new PathTree(map.getWidth(), map.getHeight());
+		damagePopups = new DamagePopups(parentStage);
+		
+		stepPool = new Pool<Actor>() {
+			@Override
+			protected Actor newObject() {
+				Actor stepActor = setupActor(textureMap.get(EffectType.PLAN_STEP));
+				stepActor.setTouchable(Touchable.disabled);
+				return stepActor;
+			}
+		};
 	}
 	
 	// visibility
@@ -59,33 +77,39 @@ public class EffectsManager {
 		cursor.setVisible(visable);
 	}
 	
-	public void addMoveTiles(CharacterActor origin, Map<Vector2, Integer> tilesWithCost) {
-		Texture moveableTexture = textureMap.get(EffectType.MOVE_CHOICE);
-		
-		for (Vector2 position : tilesWithCost.keySet()) {
-			SelectableActionActor a = new SelectableActionActor(
-					origin, moveableTexture, tilesWithCost.get(position));
-			a.setBounds(a.getX(), a.getY(), moveableTexture.getWidth(), moveableTexture.getHeight());
-			a.setPosition(position.x * RPGStage.TILE_SIZE, position.y * RPGStage.TILE_SIZE);
-			a.setTouchable(Touchable.enabled);
-			selectableTiles.add(a);  // add to set so we can clear when no longer needed
-			parentStage.addActor(a);
+	/**
+	 * @return the tree move tiles are shown from, to be filled by Wayfinder.buildPathTree
+	 */
+	public PathTree getMoveTree() {
+		return moveTree;
+	}
+	
+	/**
+	 * Shows every selectable tile in the move tree as a move choice 
+	 * @param origin the character moving
+	 */
+	public void addMoveTiles(CharacterActor origin) {
+		for (int i = 0; i < moveTree.getNumSelectable(); i++) {
+			int tile = moveTree.getSelectable(i);
+			selectableTiles.addMove(origin, moveTree.getX(tile), moveTree.getY(tile), moveTree.getMovesLeft(tile));
 		}
+		selectableTiles.toFront();  // over characters and darkness
 	}
 	
 	public void addAttackTiles(CharacterActor origin, Map<Vector2, Integer> tiles, AttackAction a) {
-		Texture attackableTexture = textureMap.get(EffectType.ATTACK_CHOICE);
-		
 		for (Vector2 position : tiles.keySet()) {
-			SelectableActionActor newTile = new SelectableActionActor(
-					origin, attackableTexture, a);
-			newTile.setBounds(newTile.getX(), newTile.getY(),
-					attackableTexture.getWidth(), attackableTexture.getHeight());
-			newTile.setPosition(position.x * RPGStage.TILE_SIZE, position.y * RPGStage.TILE_SIZE);
-			newTile.setTouchable(Touchable.enabled);
-			selectableTiles.add(newTile);
-			parentStage.addActor(newTile);
+			selectableTiles.addAttack(origin, position, a);
 		}
+		selectableTiles.toFront();
+	}
+	
+	/**
+	 * Looks up the move or attack choice on a tile
+	 * @param cell the tile
+	 * @return the choice, or null if there isn't one. Reused between calls.
+	 */
+	public SelectableActionActor getSelection(Vector2 cell) {
+		return selectableTiles.getSelection(cell);
 	}
 	
 	public void mouseOver(Vector2 mousePosition) {
@@ -94,10 +118,14 @@ public class EffectsManager {
 		cursor.setPosition(RPGStage.snapToGrid(mapPosition.x), RPGStage.snapToGrid(mapPosition.y));
 		
 		// add strategy if moving 
-		Vector2 gridPosition = new Vector2((int) mapPosition.x/64, (int) mapPosition.y/64);
-		if (!gridPosition.epsilonEquals(lastCellMousedOver)) {
-			mouseOverTile(gridPosition, parentStage.hit(mapPosition.x, mapPosition.y, true)); 
-			lastCellMousedOver = gridPosition;
+		int x = (int) mapPosition.x/64;
+		int y = (int) mapPosition.y/64;
+		if (lastCellMousedOver == null) {
+			lastCellMousedOver = new Vector2(-1, -1);
+		}
+		if (x != lastCellMousedOver.x || y != lastCellMousedOver.y) {
+			lastCellMousedOver.set(x, y);
+			mouseOverTile(lastCellMousedOver, getSelection(lastCellMousedOver)); 
 		}
 	}
 	
@@ -109,21 +137,16 @@ public class EffectsManager {
 			if (mousedOver instanceof SelectableActionActor) {
 				SelectableActionActor sa = (SelectableActionActor) mousedOver;
 				if (sa.isMove()) {
-					Strategy pathToPosition = Wayfinder.getStrategyToTile(sa.getOrigin().getCell(),
-													gridPosition,  sa.getOrigin(),
-													ActionProperties.getDefaultMoveProperty(true));
-					displayStrategy(pathToPosition);
+					displayPath(gridPosition);
+				} else if (sa.getAttack().isArea()) {
+					displayArea(sa.getOrigin(), gridPosition, sa.getAttack());
 				}
 			}
 		}
 	}
 	
 	public void clearSelectableTiles() {
-		for (SelectableActionActor a : selectableTiles) {
-			a.clear();
-			a.remove();
-		}
-		selectableTiles.clear();
+		selectableTiles.clearTiles();
 	}
 	
 	public void displayNewStrategy(Strategy s) {
@@ -137,13 +160,49 @@ public class EffectsManager {
 	}
 	
 	public void clearDisplayedStrategy() {
-		for (Actor a : stepTiles) {
+		for (int i = 0; i < stepTiles.size; i++) {
+			Actor a = stepTiles.get(i);
 			a.remove();
 			a.clear();
 		}
+		stepPool.freeAll(stepTiles);
 		stepTiles.clear();
 	}
 	
+	/**
+	 * Shows the path to a tile in the move tree, following it back from the
+	 * tile without searching or making a Strategy
+	 * @param target the tile
+	 */
+	public void displayPath(Vector2 target) {
+		if (!moveTree.isReached(target)) { return; }
+		Texture stepTexture = textureMap.get(EffectType.PLAN_STEP);
+		
+		for (int i = moveTree.index((int) target.x, (int) target.y); moveTree.getParent(i) != -1; i = moveTree.getParent(i)) {
+			Actor stepActor = stepPool.obtain();
+			stepActor.setPosition(moveTree.getX(i) * RPGStage.TILE_SIZE + RPGStage.TILE_SIZE/2-stepTexture.getWidth()/2,
+					moveTree.getY(i) * RPGStage.TILE_SIZE + RPGStage.TILE_SIZE/2-stepTexture.getHeight()/2);
+			stepTiles.add(stepActor);
+			parentStage.addActor(stepActor);
+		}
+	}
+	
+	/**
+	 * Marks every tile an area attack aimed at a tile would cover
+	 */
+	public void displayArea(CharacterActor origin, Vector2 target, AttackAction a) {
+		Texture stepTexture = textureMap.get(EffectType.PLAN_STEP);
+		areaTiles.clear();
+		parentStage.getEngine().getSystem(AreaSystem.class).getTiles(origin, target, a, areaTiles);
+		for (int i = 0; i < areaTiles.size; i += 2) {
+			Actor stepActor = stepPool.obtain();
+			stepActor.setPosition(areaTiles.get(i) * RPGStage.TILE_SIZE + RPGStage.TILE_SIZE/2-stepTexture.getWidth()/2,
+					areaTiles.get(i + 1) * RPGStage.TILE_SIZE + RPGStage.TILE_SIZE/2-stepTexture.getHeight()/2);
+			stepTiles.add(stepActor);
+			parentStage.addActor(stepActor);
+		}
+	}
+	
 	public void displayStrategy(Strategy s) {
 		s.setup();
 		Texture stepTexture = textureMap.get(EffectType.PLAN_STEP);
@@ -153,12 +212,9 @@ public class EffectsManager {
 			assert nextStep instanceof MoveStep;  // for now
 			Vector2 nextMove = ((MoveStep) nextStep).stepLocation;
 			
-			Actor stepActor = setupActor(stepTexture);
-			stepActor.setBounds(stepActor.getX(), stepActor.getY(),
-					stepTexture.getWidth(), stepTexture.getHeight());
+			Actor stepActor = stepPool.obtain();
 			stepActor.setPosition(nextMove.x * RPGStage.TILE_SIZE + RPGStage.TILE_SIZE/2-stepTexture.getWidth()/2,
 					nextMove.y * RPGStage.TILE_SIZE + RPGStage.TILE_SIZE/2-stepTexture.getHeight()/2);
-			stepActor.setTouchable(Touchable.disabled);
 			stepTiles.add(stepActor);
 			parentStage.addActor(stepActor);
 				
@@ -166,21 +222,16 @@ public class EffectsManager {
 	}
 	
 	public void displayDamage(CharacterActor target, String damage) {
-		Skin skin = new Skin(Gdx.files.internal("data/UiData/uiskin.json"));
-		
-		int textOffset = damage.length() * 5;
-		
-		int xOffset = RPGStage.TILE_SIZE / 2 - textOffset;
-		int yOffset = RPGStage.TILE_SIZE / 4 * 3;
-		
-		Label dmgNumber = new Label(damage, skin);
-		dmgNumber.setPosition(target.getX()+xOffset, target.getY() + yOffset);
-		
-		dmgNumber.addAction(Actions.moveBy(0f, yOffset/2f, 1.2f));
-		dmgNumber.addAction(Actions.delay(.6f, Actions.fadeOut(.55f)));
-		dmgNumber.addAction(Actions.delay(1.2f, Actions.removeActor()));
-		
-		parentStage.addActor(dmgNumber);
+		damagePopups.show(target, damage);
+	}
+	
+	public void dispose() {
+		damagePopups.dispose();
+		textureMap.get(EffectType.PLAN_STEP).dispose();  // made here, the rest are shared
+		Assets.release(textureMap.get(EffectType.CURSOR));
+		Assets.release(textureMap.get(EffectType.MOVE_CHOICE));
+		Assets.release(textureMap.get(EffectType.ATTACK_CHOICE));
+		textureMap.clear();
 	}
 	
 	
@@ -215,15 +266,15 @@ public class EffectsManager {
 		
 		// Cursor texture
 		textureMap.put(EffectType.CURSOR,
-				new Texture(Gdx.files.internal("data/MiscSprites/selector.png")));
+				Assets.getTexture("data/MiscSprites/selector.png"));
 		
 		// Plan move texture
 		textureMap.put(EffectType.MOVE_CHOICE,
-				new Texture(Gdx.files.internal("data/MiscSprites/moveable.png")));
+				Assets.getTexture("data/MiscSprites/moveable.png"));
 		
 		// Plan attack texture
 		textureMap.put(EffectType.ATTACK_CHOICE,
-				new Texture(Gdx.files.internal("data/MiscSprites/attackable.png")));
+				Assets.getTexture("data/MiscSprites/attackable.png"));
 	}
 	
 	
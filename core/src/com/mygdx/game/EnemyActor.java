@@ -17,12 +17,18 @@ public class EnemyActor extends CharacterActor {
 	public EnemyActor(Texture t, String name, int speed) {
 		super(t, name, speed);
 		brain = new RPGAiBasic(this);
+		setup();
 	}
 	
 	public EnemyActor(RPGStage parent, CharacterInfo c) {
 		super(parent, c);
-		brain = new RPGAiBasic(this);
+		brain = c.ai != null ? new RPGAiTree(this, c.ai) : new RPGAiBasic(this);
+		setup();
 	}
 	
-	
+	private void setup() {
+		addComponent(new BrainComponent()).brain = brain;
+		// hidden in fog unless a player can see it
+		Mappers.sprite.get(getEntity()).hiddenInFog = true;
+	}
 }
@@ -1,45 +1,38 @@
 package com.mygdx.game;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.gdx.math.Vector2;
 import com.mygdx.game.ActionProperties.CanMoveThrough;
 import com.mygdx.game.ActionProperties.CanSelect;
 import com.mygdx.game.Strategy.Step;
 
 public class EnemyOperator extends Operator {
-	Queue<EnemyActor> readyToAct;
+	Queue<EnemyActor> readyToAct;  // enemies yet to go this turn, in initiative order
+	private boolean thinking;  // the next enemy is part way through planning
 	
 	public EnemyOperator(RPGStage parent) {
 		super(parent);
-		readyToAct = new LinkedList<>();
+		readyToAct = new PriorityQueue<>(16, CharacterActor.INITIATIVE_ORDER);
 	}
 
 	@Override
 	public boolean executingStep(CharacterActor actor, Step s) {
 		if (actor instanceof PlayerActor) {
-			for (CharacterActor a : actors) {
-				if (checkLineOfSight(a, actor)) {
-					((EnemyActor) a).brain.seeEnemy(actor);
-				}
-					
-			}
+			stage.getEngine().getSystem(PerceptionSystem.class).spot(actor);
 		}
 		return false;
 	}
 	
 	public boolean checkLineOfSight(CharacterActor a, CharacterActor target) {
 		assert a instanceof EnemyActor;
-		if (Wayfinder.traceLine(a.getCell(), target.getCell(), RPG.getCurrentMapInfo()) &&
-				a.getCell().dst(target.getCell()) < a.getVisionDistance()) {
-			return true;
-		} else {
-			return false;
-		}
+		// uses the same (cached) sight as the enemy team's vision
+		return stage.getEngine().getSystem(PerceptionSystem.class).canSee(a.getEntity(), target);
 	}
 	
 	@Override
@@ -58,26 +51,51 @@ public class EnemyOperator extends Operator {
 	
 	@Override
 	public void beginTurn() {
+		Engine engine = stage.getEngine();
+		engine.getSystem(RefreshSystem.class).refreshEnemies();
+		engine.getSystem(PerceptionSystem.class).spotAll(otherOp.actors);
 		for (CharacterActor a : actors) { 
-			EnemyActor e = (EnemyActor) a;
-			e.refresh();
-			for (CharacterActor enemy : otherOp.actors) {
-				if (checkLineOfSight(a, enemy)) {
-					e.brain.seeEnemy(enemy);
-				}
-			}
-			readyToAct.add(e);
+			readyToAct.add((EnemyActor) a);
 		}
 	}
 	
-	// Plans and executes 
+	/**
+	 * @return the enemy that will plan next, or null if all have this turn
+	 */
+	public EnemyActor peekReady() {
+		return readyToAct.peek();
+	}
+
+	// Plans and executes
 	public Strategy.Origin getStrategy() {
-		if (readyToAct.isEmpty()) {
+		return planNext(RPGAi.NO_DEADLINE);
+	}
+	
+	/**
+	 * Plans for the next enemy in turn order, carrying on from where the last
+	 * call stopped if it ran out of time
+	 * @param deadline System.nanoTime to stop thinking by, or RPGAi.NO_DEADLINE
+	 * @return the enemy and its strategy, or null if none are waiting or it's still thinking
+	 */
+	public Strategy.Origin planNext(long deadline) {
+		EnemyActor next = readyToAct.peek();
+		if (next == null) {
+			return null;
+		}
+		Strategy s = next.brain.plan(deadline);
+		thinking = s == null;
+		if (thinking) {
 			return null;
-		} else {
-			EnemyActor next = readyToAct.poll();
-			return new Strategy.Origin(next.brain.getStrategy(), next);
 		}
+		readyToAct.poll();
+		return new Strategy.Origin(s, next);
+	}
+	
+	/**
+	 * @return true if the next enemy ran out of time planning, see planNext
+	 */
+	public boolean isThinking() {
+		return thinking;
 	}
 		
 	
@@ -0,0 +1,146 @@
+package com.mygdx.game;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * What one observer can see: every tile within range (diagonals counting as
+ * one) with an unbroken Wayfinder.traceLine to the observer's tile.
+ *
+ * When the observer steps to a neighbouring tile only the visibility delta is
+ * worked out. Tiles coming into range are traced, and so are tiles whose line
+ * of sight could have changed. A traced line never leaves the box spanned by
+ * its two ends, so a tile with no walls in the boxes between it and both the
+ * old and new tile is seen from both and isn't traced again. Walls are
+ * counted with a summed area table over just the tiles around the step.
+ */
+public class FieldOfView {
+	private static final Profiler.Counter traceCounter = Profiler.counter("sight traces");
+
+	private int x = -1, y = -1;  // tile seen from, -1 until first looked
+	private int range = -1;
+	private int wallVersion;  // map wall version seen was worked out for
+	private final Set<Vector2> seen = new HashSet<>();
+
+	// reused between looks
+	private int[] wallSums = new int[0];  // summed area table of walls around a step
+	private int sumX, sumY, sumHeight;  // tile at wallSums' origin, and its height in tiles
+	private final Vector2 v = new Vector2();
+
+	/**
+	 * @return tiles seen from where the observer last looked. Kept up to date by
+	 * 		look, so shouldn't be changed.
+	 */
+	public Set<Vector2> getSeen() {
+		return seen;
+	}
+
+	/**
+	 * Works out what can be seen from a tile
+	 * @param cell the tile being seen from
+	 * @param range how far can be seen, in tiles
+	 * @return a new set of the tiles in sight, including cell
+	 */
+	public static Set<Vector2> compute(Vector2 cell, int range, MapInfo map) {
+		FieldOfView view = new FieldOfView();
+		view.look((int) cell.x, (int) cell.y, range, map, null, null);
+		return view.seen;
+	}
+
+	/**
+	 * Moves the observer and updates what it sees, only tracing tiles whose
+	 * visibility could have changed if it moved at most one tile
+	 * @param entered if not null, gets the tiles that came into sight
+	 * @param left if not null, gets the tiles that went out of sight
+	 */
+	public void look(int toX, int toY, int range, MapInfo map, Array<Vector2> entered, Array<Vector2> left) {
+		boolean step = this.range == range && wallVersion == map.getWallVersion()
+				&& Math.abs(toX - x) <= 1 && Math.abs(toY - y) <= 1;
+		if (step && toX == x && toY == y) { return; }
+
+		if (step) {
+			loadWalls(map, Math.min(x, toX) - range, Math.min(y, toY) - range,
+					Math.max(x, toX) + range, Math.max(y, toY) + range);
+		}
+		int fromX = x, fromY = y;
+		x = toX;
+		y = toY;
+		this.range = range;
+		wallVersion = map.getWallVersion();
+
+		// out of range now
+		for (Iterator<Vector2> i = seen.iterator(); i.hasNext();) {
+			Vector2 t = i.next();
+			if (Math.abs((int) t.x - x) > range || Math.abs((int) t.y - y) > range) {
+				i.remove();
+				if (left != null) { left.add(t); }
+			}
+		}
+
+		Vector2 origin = new Vector2(x, y);
+		int minX = Math.max(0, x - range), maxX = Math.min(map.getWidth() - 1, x + range);
+		int minY = Math.max(0, y - range), maxY = Math.min(map.getHeight() - 1, y + range);
+		for (int tx = minX; tx <= maxX; tx++) {
+			for (int ty = minY; ty <= maxY; ty++) {
+				boolean wasInRange = step && Math.abs(tx - fromX) <= range && Math.abs(ty - fromY) <= range;
+				if (wasInRange && isClear(fromX, fromY, tx, ty, map) && isClear(x, y, tx, ty, map)) {
+					continue;  // seen from both
+				}
+				v.set(tx, ty);
+				traceCounter.inc();
+				boolean visible = (tx == x && ty == y) || Wayfinder.traceLine(v, origin, map);
+				if (visible && !seen.contains(v)) {
+					Vector2 t = new Vector2(v);
+					seen.add(t);
+					if (entered != null) { entered.add(t); }
+				} else if (!visible && seen.remove(v)) {
+					if (left != null) { left.add(new Vector2(v)); }
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills wallSums for the tiles from x0, y0 to x1, y1. Tiles off the map count as walls.
+	 */
+	private void loadWalls(MapInfo map, int x0, int y0, int x1, int y1) {
+		sumX = x0;
+		sumY = y0;
+		sumHeight = y1 - y0 + 2;
+		int size = (x1 - x0 + 2) * sumHeight;
+		if (wallSums.length < size) {
+			wallSums = new int[size];
+		}
+		// wallSums[(i + 1) * sumHeight + j + 1] is the number of walls from x0, y0 to x0 + i, y0 + j
+		for (int j = 0; j < sumHeight; j++) {
+			wallSums[j] = 0;
+		}
+		for (int i = 0; i <= x1 - x0; i++) {
+			int row = (i + 1) * sumHeight;
+			wallSums[row] = 0;
+			for (int j = 0; j <= y1 - y0; j++) {
+				int wall = map.isWall(x0 + i, y0 + j) ? 1 : 0;
+				wallSums[row + j + 1] = wall + wallSums[row - sumHeight + j + 1]
+						+ wallSums[row + j] - wallSums[row - sumHeight + j];
+			}
+		}
+	}
+
+	/**
+	 * @return true if there are no walls in the box from ax, ay to tx, ty other
+	 * 		than tx, ty itself, since a line can see the wall it ends on
+	 */
+	private boolean isClear(int ax, int ay, int tx, int ty, MapInfo map) {
+		int x0 = Math.min(ax, tx) - sumX;
+		int y0 = Math.min(ay, ty) - sumY;
+		int x1 = Math.max(ax, tx) - sumX + 1;
+		int y1 = Math.max(ay, ty) - sumY + 1;
+		int walls = wallSums[x1 * sumHeight + y1] - wallSums[x0 * sumHeight + y1]
+				- wallSums[x1 * sumHeight + y0] + wallSums[x0 * sumHeight + y0];
+		return walls == 0 || (walls == 1 && map.isWall(tx, ty));
+	}
+}
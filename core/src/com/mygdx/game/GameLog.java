@@ -0,0 +1,217 @@
+package com.mygdx.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Log that all game events get sent to. Posting an event only copies a few
+ * fields into a fixed ring buffer; a background thread drains the ring and
+ * writes one JSON object per line to a file. Nothing the game thread does here
+ * ever waits on the file or a lock: if the ring is full the event is dropped
+ * and counted instead.
+ *
+ * Events must be posted from the game (render) thread.
+ */
+public class GameLog {
+	public static final int CAPACITY = 4096;  // events the ring holds, must be a power of two
+	private static final int MASK = CAPACITY - 1;
+	private static final long IDLE_WAIT = 20000000L;  // nanoseconds the writer sleeps when the ring is empty
+
+	/**
+	 * Kinds of events. Which fields mean what depends on the type:
+	 * MOVE: actor moved to x, y costing amount, with remaining moves left
+	 * ATTACK: actor attacked target at x, y for amount damage, or for an area attack
+	 * 		aimed at x, y with no target, remaining is how many it hit
+	 * DAMAGE: actor at x, y took amount damage, remaining health left
+	 * DEATH: actor died at x, y
+	 * SPOTTED: actor spotted target at x, y
+	 * PLAN: ai actor weighed amount strategies, picking one costing remaining
+	 * TURN_START, TURN_END: actor is the team ("player" or "enemy"), amount is the turn number
+	 */
+	public enum Type {
+		MOVE, ATTACK, DAMAGE, DEATH, SPOTTED, PLAN, TURN_START, TURN_END;
+	}
+
+	// the ring, one array per field so posting never allocates
+	private static final Type[] types = new Type[CAPACITY];
+	private static final long[] times = new long[CAPACITY];
+	private static final String[] actors = new String[CAPACITY];
+	private static final String[] targets = new String[CAPACITY];
+	private static final int[] xs = new int[CAPACITY];
+	private static final int[] ys = new int[CAPACITY];
+	private static final int[] amounts = new int[CAPACITY];
+	private static final int[] remainings = new int[CAPACITY];
+
+	private static final AtomicLong head = new AtomicLong();  // next slot to post to, only the game thread writes it
+	private static final AtomicLong tail = new AtomicLong();  // next slot to write out, only the writer thread writes it
+	private static final AtomicLong dropped = new AtomicLong();  // events lost to a full ring
+
+	private static volatile boolean open = false;
+	private static boolean echo = false;  // also print events to stdout, from the writer thread
+	private static long startTime;
+	private static Thread writerThread;
+	private static Writer out;
+
+	/**
+	 * Starts logging to a file, on a new daemon thread. Does nothing if already open.
+	 * @param file file to write events to, replaced if it exists
+	 * @param echoToConsole also print each event to stdout
+	 */
+	public static synchronized void open(FileHandle file, boolean echoToConsole) {
+		if (open) { return; }
+		out = file.writer(false, "UTF-8");
+		echo = echoToConsole;
+		startTime = System.nanoTime();
+		head.set(0);
+		tail.set(0);
+		dropped.set(0);
+		open = true;
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (open) {
+					if (drain() == 0) {
+						LockSupport.parkNanos(IDLE_WAIT);
+					}
+				}
+				drain();  // whatever was posted before closing
+			}
+		}, "GameLog");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Stops logging, waiting for the writer to finish the events already posted
+	 */
+	public static synchronized void close() {
+		if (!open) { return; }
+		open = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			Gdx.app.error("GameLog", "couldn't close log", e);
+		}
+		if (dropped.get() > 0) {
+			Gdx.app.log("GameLog", dropped.get() + " events dropped");
+		}
+		writerThread = null;
+		out = null;
+	}
+
+	public static boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return number of events lost because the writer fell behind
+	 */
+	public static long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Posts an event about a character, at the target's tile if there is one
+	 * or else the actor's
+	 */
+	public static void post(Type type, CharacterActor actor, CharacterActor target, int amount, int remaining) {
+		if (!open) { return; }
+		CharacterActor at = target != null ? target : actor;
+		int x = at != null ? (int) at.getX() / RPGStage.TILE_SIZE : -1;
+		int y = at != null ? (int) at.getY() / RPGStage.TILE_SIZE : -1;
+		post(type, actor != null ? actor.getName() : null, target != null ? target.getName() : null,
+				x, y, amount, remaining);
+	}
+
+	/**
+	 * Posts an event. Never blocks, if the ring is full the event is dropped.
+	 * @param type type of event
+	 * @param actor name of the character or team the event is about, may be null
+	 * @param target name of the other character involved, may be null
+	 * @param x x of the tile the event happened at
+	 * @param y y of the tile the event happened at
+	 * @param amount see Type
+	 * @param remaining see Type
+	 */
+	public static void post(Type type, String actor, String target, int x, int y, int amount, int remaining) {
+		if (!open) { return; }
+		long h = head.get();
+		if (h - tail.get() >= CAPACITY) {
+			dropped.incrementAndGet();
+			return;
+		}
+		int i = (int) (h & MASK);
+		types[i] = type;
+		times[i] = System.nanoTime() - startTime;
+		actors[i] = actor;
+		targets[i] = target;
+		xs[i] = x;
+		ys[i] = y;
+		amounts[i] = amount;
+		remainings[i] = remaining;
+		head.lazySet(h + 1);  // publishes the slot to the writer
+	}
+
+	/**
+	 * Writes out every event posted so far, on the writer thread
+	 * @return number of events written
+	 */
+	private static int drain() {
+		long start = tail.get();
+		long h = head.get();
+		if (start == h) { return 0; }
+		long t = start;
+		StringBuilder line = new StringBuilder(128);
+		try {
+			for (; t < h; t++) {
+				int i = (int) (t & MASK);
+				line.setLength(0);
+				line.append("{\"t\":").append(times[i] / 1000000)
+					.append(",\"type\":\"").append(types[i]).append('"');
+				appendName(line, "actor", actors[i]);
+				appendName(line, "target", targets[i]);
+				line.append(",\"x\":").append(xs[i]).append(",\"y\":").append(ys[i])
+					.append(",\"amount\":").append(amounts[i])
+					.append(",\"remaining\":").append(remainings[i]).append("}\n");
+				actors[i] = null;  // don't hold on to anything once written
+				targets[i] = null;
+				tail.lazySet(t + 1);  // frees the slot for the game thread
+
+				out.append(line);
+				if (echo) {
+					System.out.print(line);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			Gdx.app.error("GameLog", "couldn't write log", e);
+			tail.lazySet(h);  // skip the rest rather than retrying forever
+		}
+		return (int) (h - start);
+	}
+
+	private static void appendName(StringBuilder line, String key, String name) {
+		if (name == null) { return; }
+		line.append(",\"").append(key).append("\":\"");
+		for (int c = 0; c < name.length(); c++) {
+			char ch = name.charAt(c);
+			if (ch == '"' || ch == '\\') {
+				line.append('\\');
+			}
+			line.append(ch);
+		}
+		line.append('"');
+	}
+}
@@ -0,0 +1,75 @@
+package com.mygdx.game;
+
+/**
+ * Seeded, splittable random number generator (SplitMix64) for anything that
+ * affects the game, so a battle started from the same seed with the same input
+ * always plays out the same way. Each character's AI gets its own generator
+ * split off the stage's, so one character's rolls never shift another's.
+ */
+public class GameRandom {
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+	private final long gamma;  // amount state advances by each roll, always odd
+
+	/**
+	 * @param seed seed to start from
+	 */
+	public GameRandom(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Recreates a generator exactly as it was, i.e. from a saved game
+	 * @param state value from getState
+	 * @param gamma value from getGamma
+	 */
+	public GameRandom(long state, long gamma) {
+		this.state = state;
+		this.gamma = gamma | 1;
+	}
+
+	public long getState() {
+		return state;
+	}
+
+	public long getGamma() {
+		return gamma;
+	}
+
+	public long nextLong() {
+		return mix64(state += gamma);
+	}
+
+	/**
+	 * @param bound upper bound (exclusive), must be positive
+	 * @return a random int from 0 to bound - 1
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		return (int) ((nextLong() >>> 1) % bound);
+	}
+
+	/**
+	 * @return a new generator independent of this one. Splitting advances this one.
+	 */
+	public GameRandom split() {
+		return new GameRandom(nextLong(), mixGamma(state += gamma));
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -0,0 +1,115 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Buckets interactive actors by the tiles their bounds cover, so finding the
+ * actor under a point only looks at actors on that tile instead of walking
+ * the whole stage. Actors are expected to be direct, unrotated and unscaled
+ * children of the stage root, i.e. characters.
+ */
+public class HitIndex {
+	private final int cellSize;  // size of a bucket in stage units
+	private IntMap<Array<Actor>> buckets;  // actors touching each cell, in the order added
+	private ObjectMap<Actor, IntArray> actorCells;  // cells each actor is in, for removal
+	
+	/**
+	 * @param cellSize size of each bucket, i.e. the tile size
+	 */
+	public HitIndex(int cellSize) {
+		this.cellSize = cellSize;
+		buckets = new IntMap<>();
+		actorCells = new ObjectMap<>();
+	}
+	
+	/**
+	 * Packs a cell position into a bucket key. Supports cells from
+	 * -32768 to 32767 on each axis.
+	 */
+	private static int key(int cellX, int cellY) {
+		return (cellX << 16) ^ (cellY & 0xFFFF);
+	}
+	
+	/**
+	 * Adds an actor, or moves it to the cells it now covers if already added
+	 * @param a the actor
+	 */
+	public void update(Actor a) {
+		IntArray cells = actorCells.get(a);
+		if (cells == null) {
+			cells = new IntArray(1);
+			actorCells.put(a, cells);
+		} else {
+			removeFromBuckets(a, cells);
+		}
+		
+		int minX = MathUtils.floor(a.getX() / cellSize);
+		int minY = MathUtils.floor(a.getY() / cellSize);
+		// bounds are exclusive at the top/right, so an actor exactly one tile big is in one cell
+		int maxX = Math.max(minX, MathUtils.ceil((a.getX() + a.getWidth()) / cellSize) - 1);
+		int maxY = Math.max(minY, MathUtils.ceil((a.getY() + a.getHeight()) / cellSize) - 1);
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				int k = key(x, y);
+				Array<Actor> bucket = buckets.get(k);
+				if (bucket == null) {
+					bucket = new Array<>(true, 2);  // ordered, so removing one keeps newest last
+					buckets.put(k, bucket);
+				}
+				bucket.add(a);
+				cells.add(k);
+			}
+		}
+	}
+	
+	/**
+	 * Removes an actor from the index
+	 * @param a the actor
+	 */
+	public void remove(Actor a) {
+		IntArray cells = actorCells.remove(a);
+		if (cells != null) {
+			removeFromBuckets(a, cells);
+		}
+	}
+	
+	private void removeFromBuckets(Actor a, IntArray cells) {
+		for (int i = 0; i < cells.size; i++) {
+			Array<Actor> bucket = buckets.get(cells.get(i));
+			bucket.removeValue(a, true);
+			if (bucket.size == 0) {
+				buckets.remove(cells.get(i));
+			}
+		}
+		cells.clear();
+	}
+	
+	/**
+	 * Finds the actor at a point, the same way Stage.hit would for indexed actors
+	 * @param x X position on the stage
+	 * @param y Y position on the stage
+	 * @param touchable if true only touchable actors are hit
+	 * @return the most recently indexed actor hit, or null if none
+	 */
+	public Actor hit(float x, float y, boolean touchable) {
+		Array<Actor> bucket = buckets.get(key(MathUtils.floor(x / cellSize), MathUtils.floor(y / cellSize)));
+		if (bucket == null) { return null; }
+		for (int i = bucket.size - 1; i >= 0; i--) {
+			Actor a = bucket.get(i);
+			if (!a.isVisible() || (touchable && a.getTouchable() != Touchable.enabled)) {
+				continue;
+			}
+			Actor hit = a.hit(x - a.getX(), y - a.getY(), touchable);
+			if (hit != null) {
+				return hit;
+			}
+		}
+		return null;
+	}
+}
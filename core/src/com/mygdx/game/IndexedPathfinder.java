@@ -0,0 +1,332 @@
+package com.mygdx.game;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.badlogic.gdx.ai.pfa.Connection;
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.Heuristic;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedAStarPathFinder;
+import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.mygdx.game.ActionProperties.CanMoveThrough;
+import com.mygdx.game.ActionProperties.EffectedByDarkness;
+import com.mygdx.game.ActionProperties.EffectedByTerrain;
+
+/**
+ * Pathfinder backed by gdx-ai's IndexedAStarPathFinder, over a graph with a node
+ * for every map cell. Nodes and connections are made as searches first reach
+ * them and kept for the map, only their costs being updated, and the A* node
+ * records are indexed arrays, so repeat searches don't allocate beyond their
+ * results. Searching for any of a set of tiles goes through an extra sink node
+ * every target connects to for free.
+ *
+ * Floods use the same graph with a bucket queue. Sight is the same line trace
+ * Wayfinder uses, since it doesn't involve the graph.
+ */
+public class IndexedPathfinder implements Pathfinder {
+	private static final Profiler.Counter searchCounter = Profiler.counter("searches");
+	private static final Profiler.Counter expandedCounter = Profiler.counter("nodes expanded");
+
+	// same order as Wayfinder, straight directions first
+	private static final int[] ADJACENT_X = {1, -1, 0, 0, 1, 1, -1, -1};
+	private static final int[] ADJACENT_Y = {0, 0, 1, -1, 1, -1, 1, -1};
+
+	/**
+	 * A map cell, or the sink when x and y are -1
+	 */
+	public static class Cell {
+		public final int x, y, index;
+
+		Cell(int x, int y, int index) {
+			this.x = x;
+			this.y = y;
+			this.index = index;
+		}
+	}
+
+	private static class CellConnection implements Connection<Cell> {
+		private final Cell from, to;
+		private float cost;  // set each time the connection is handed out
+
+		CellConnection(Cell from, Cell to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public float getCost() {
+			return cost;
+		}
+
+		@Override
+		public Cell getFromNode() {
+			return from;
+		}
+
+		@Override
+		public Cell getToNode() {
+			return to;
+		}
+	}
+
+	/**
+	 * The map's cells plus a sink. Which connections are open depends on the
+	 * search going on, set through begin.
+	 */
+	private class CellGraph implements IndexedGraph<Cell> {
+		private final int width, height;
+		private final Cell[] cells;  // by x * height + y, then the sink
+		private final CellConnection[] connections;  // 8 per cell by direction
+		private final CellConnection[] toSink;  // per cell
+		private final Array<Connection<Cell>> out = new Array<>(8);  // reused, A* reads it before asking again
+		private final Vector2 v = new Vector2();  // reused for lookups
+
+		// the search going on
+		private MapInfo map;
+		private ActionProperties p;
+		private Map<Vector2, CharacterActor> charMap;
+		private final IntArray targets = new IntArray();
+		private int[] targetStamp;
+		private int stamp;
+
+		CellGraph(int width, int height) {
+			this.width = width;
+			this.height = height;
+			cells = new Cell[width * height + 1];
+			cells[width * height] = new Cell(-1, -1, width * height);
+			connections = new CellConnection[width * height * 8];
+			toSink = new CellConnection[width * height];
+			targetStamp = new int[width * height];
+		}
+
+		Cell getCell(int x, int y) {
+			int i = x * height + y;
+			if (cells[i] == null) {
+				cells[i] = new Cell(x, y, i);
+			}
+			return cells[i];
+		}
+
+		Cell getSink() {
+			return cells[width * height];
+		}
+
+		void begin(MapInfo map, ActionProperties p, Set<Vector2> targetSet) {
+			this.map = map;
+			this.p = p;
+			charMap = map.getCharacters();
+			stamp++;
+			targets.clear();
+			if (targetSet != null) {
+				for (Vector2 t : targetSet) {
+					int x = (int) t.x;
+					int y = (int) t.y;
+					if (x >= 0 && y >= 0 && x < width && y < height) {
+						targetStamp[x * height + y] = stamp;
+						targets.add(x, y);
+					}
+				}
+			}
+		}
+
+		boolean isTarget(int index) {
+			return targetStamp[index] == stamp;
+		}
+
+		@Override
+		public int getIndex(Cell node) {
+			return node.index;
+		}
+
+		@Override
+		public int getNodeCount() {
+			return cells.length;
+		}
+
+		@Override
+		public Array<Connection<Cell>> getConnections(Cell from) {
+			out.clear();
+			if (from.x < 0) { return out; }  // the sink goes nowhere
+			expandedCounter.inc();
+			// reaching a target is the end, it's only left for the sink
+			if (isTarget(from.index)) {
+				if (toSink[from.index] == null) {
+					toSink[from.index] = new CellConnection(from, getSink());
+				}
+				out.add(toSink[from.index]);
+				return out;
+			}
+
+			for (int n = 0; n < ADJACENT_X.length; n++) {
+				int x = from.x + ADJACENT_X[n];
+				int y = from.y + ADJACENT_Y[n];
+				if (x < 0 || y < 0 || x >= width || y >= height) { continue; }
+				v.set(x, y);
+				// Can't select or explore darkness normally
+				if (map.isDarkness(x, y) && p.isNot(EffectedByDarkness.IGNORE)) { continue; }
+				if (!isTarget(x * height + y) && !Wayfinder.canMoveInto(v, map.isWall(x, y), charMap, p)) { continue; }
+
+				int c = from.index * 8 + n;
+				if (connections[c] == null) {
+					connections[c] = new CellConnection(from, getCell(x, y));
+				}
+				connections[c].cost = cost(x, y);
+				out.add(connections[c]);
+			}
+			return out;
+		}
+
+		int cost(int x, int y) {
+			return p.is(EffectedByTerrain.RESPECT_TERRAIN) ? map.getTileSpeedToCross(x, y) : 1;
+		}
+	}
+
+	/**
+	 * Distance to the nearest target, the same estimate Wayfinder uses
+	 */
+	private final Heuristic<Cell> heuristic = new Heuristic<Cell>() {
+		@Override
+		public float estimate(Cell node, Cell end) {
+			if (node.x < 0) { return 0; }
+			IntArray targets = graph.targets;
+			float best = Float.MAX_VALUE;
+			for (int i = 0; i < targets.size; i += 2) {
+				float dx = targets.get(i) - node.x;
+				float dy = targets.get(i + 1) - node.y;
+				best = Math.min(best, (float) Math.sqrt(dx * dx + dy * dy) / 1.5f);
+			}
+			return best;
+		}
+	};
+
+	private CellGraph graph;  // for the map last searched
+	private IndexedAStarPathFinder<Cell> finder;
+	private final DefaultGraphPath<Connection<Cell>> path = new DefaultGraphPath<>();
+
+	// flood state, sized with the graph
+	private int[] floodStamp;
+	private int floodCount;
+	private IntArray[] buckets = new IntArray[0];
+
+	@Override
+	public String getName() {
+		return "indexed";
+	}
+
+	/**
+	 * @return the graph for a map, remade only when the map's size changes
+	 */
+	private CellGraph graphFor(MapInfo map) {
+		if (graph == null || graph.width != map.getWidth() || graph.height != map.getHeight()) {
+			graph = new CellGraph(map.getWidth(), map.getHeight());
+			finder = new IndexedAStarPathFinder<>(graph);
+			floodStamp = new int[map.getWidth() * map.getHeight()];
+		}
+		return graph;
+	}
+
+	@Override
+	public SortedMap<Integer, Vector2> getPathToTiles(Vector2 origin, Set<Vector2> targets,
+			MapInfo map, CharacterActor actor, ActionProperties p) {
+		if (p.isNot(CanMoveThrough.WALLS) && !Wayfinder.mayShareRegion(origin, targets, map)) {
+			return null;
+		}
+		CellGraph g = graphFor(map);
+		g.begin(map, p, targets);
+		if (g.targets.size == 0) { return null; }
+
+		searchCounter.inc();
+		path.clear();
+		if (!finder.searchConnectionPath(g.getCell((int) origin.x, (int) origin.y), g.getSink(), heuristic, path)) {
+			return null;
+		}
+
+		SortedMap<Integer, Vector2> moves = new TreeMap<>();
+		moves.put(0, new Vector2(origin));
+		int cost = 0;
+		for (int i = 0; i < path.getCount(); i++) {
+			Cell to = path.get(i).getToNode();
+			if (to.x < 0) { break; }  // the sink
+			cost += (int) path.get(i).getCost();
+			moves.put(cost, new Vector2(to.x, to.y));
+		}
+		return moves;
+	}
+
+	@Override
+	public Map<Vector2, Integer> getAllSelectableTiles(CharacterActor actor, Vector2 origin,
+			int reach, MapInfo map, ActionProperties p) {
+		CellGraph g = graphFor(map);
+		g.begin(map, p, null);
+		Map<Vector2, CharacterActor> charMap = map.getCharacters();
+		Map<Vector2, Integer> selectable = new HashMap<>();
+		Vector2 v = new Vector2();  // reused for lookups
+
+		// tiles waiting to be explored, bucketed by moves left
+		if (buckets.length < reach + 1) {
+			IntArray[] grown = new IntArray[reach + 1];
+			System.arraycopy(buckets, 0, grown, 0, buckets.length);
+			buckets = grown;
+		}
+		for (int i = 0; i <= reach; i++) {
+			if (buckets[i] == null) {
+				buckets[i] = new IntArray();
+			}
+			buckets[i].clear();
+		}
+		floodCount++;
+
+		searchCounter.inc();
+		int ox = (int) origin.x;
+		int oy = (int) origin.y;
+		if (Wayfinder.isSelectable(origin, map.isWall(ox, oy), charMap, p, actor)) {
+			selectable.put(new Vector2(origin), reach);
+		}
+		floodStamp[ox * g.height + oy] = floodCount;
+		buckets[reach].add(ox * g.height + oy);
+
+		// most moves left first, so a tile is first seen by the cheapest way in
+		for (int left = reach; left > 0; left--) {
+			IntArray bucket = buckets[left];
+			for (int b = 0; b < bucket.size; b++) {
+				int u = bucket.get(b);
+				expandedCounter.inc();
+				int ux = u / g.height;
+				int uy = u % g.height;
+				for (int n = 0; n < ADJACENT_X.length; n++) {
+					int x = ux + ADJACENT_X[n];
+					int y = uy + ADJACENT_Y[n];
+					if (x < 0 || y < 0 || x >= g.width || y >= g.height) { continue; }
+					int i = x * g.height + y;
+					if (floodStamp[i] == floodCount) { continue; }
+					floodStamp[i] = floodCount;
+					// Can't select or explore darkness normally
+					if (map.isDarkness(x, y) && p.isNot(EffectedByDarkness.IGNORE)) { continue; }
+
+					int after = left - g.cost(x, y);
+					if (after < 0) { continue; }
+					v.set(x, y);
+					boolean wall = map.isWall(x, y);
+					if (Wayfinder.isSelectable(v, wall, charMap, p, actor)) {
+						selectable.put(new Vector2(v), after);
+					}
+					if (after > 0 && Wayfinder.canMoveInto(v, wall, charMap, p)) {
+						buckets[after].add(i);
+					}
+				}
+			}
+		}
+		return selectable;
+	}
+
+	@Override
+	public boolean traceLine(Vector2 a, Vector2 b, MapInfo map) {
+		return Wayfinder.traceLine(a, b, map);
+	}
+}
@@ -0,0 +1,289 @@
+package com.mygdx.game;
+
+import java.util.Map;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Influence maps for each team, for the AI to judge tiles by:
+ * threat (how many of a team's characters could attack a tile next turn),
+ * support (how many could move onto it) and control (how strongly a team
+ * holds it against the other, nearer and faster characters counting for more).
+ *
+ * Each character's footprint is a bounded search from its tile over a full
+ * turn's moves, widened by its basic attack's range for threat. Grids are the
+ * sums of footprints, so a character that moves or dies is taken out by
+ * subtracting its old footprint. Moving or dying also frees or blocks a tile
+ * other searches might have gone through, so every character that could have
+ * reached it is searched again too. Searches wait until the grids are next
+ * read, so a whole strategy's moves cost one update. Reads are then O(1).
+ */
+public class InfluenceSystem extends EntitySystem implements EntityListener {
+	public static final int PLAYERS = 0;
+	public static final int ENEMIES = 1;
+
+	private static final Profiler.Counter searchCounter = Profiler.counter("influence searches");
+
+	/**
+	 * What one character adds to its team's grids
+	 */
+	private static class Footprint {
+		final Entity entity;
+		final int team;
+		int x = -1, y = -1;  // tile searched from, -1 until searched
+		int speed;  // moves searched over
+		final IntArray reach = new IntArray();  // tiles it can move to
+		final IntArray reachLeft = new IntArray();  // moves left on each, same order as reach
+		final IntArray threat = new IntArray();  // tiles it could attack
+		boolean dirty = true;  // needs searching again before grids are read
+
+		Footprint(Entity entity, int team) {
+			this.entity = entity;
+			this.team = team;
+		}
+	}
+
+	private ImmutableArray<Entity> characters;
+	private final ObjectMap<Entity, Footprint> footprints = new ObjectMap<>();
+	private final Array<Footprint> dirty = new Array<>(false, 16);  // footprints waiting to be searched
+
+	private int width, height;  // grids are indexed x * height + y
+	private int[][] threat = new int[2][0];
+	private int[][] support = new int[2][0];
+	private int[][] influence = new int[2][0];
+	private int[] stamp = new int[0];  // for not counting a tile twice in one threat footprint
+	private int stampCount;
+	private final Vector2 v = new Vector2();  // reused for searches
+
+	@Override
+	public void addedToEngine(Engine engine) {
+		Family family = Family.all(CellComponent.class, StatsComponent.class, ActorComponent.class).get();
+		characters = engine.getEntitiesFor(family);
+		engine.addEntityListener(family, this);
+		for (int i = 0; i < characters.size(); i++) {
+			entityAdded(characters.get(i));
+		}
+	}
+
+	@Override
+	public void removedFromEngine(Engine engine) {
+		engine.removeEntityListener(this);
+		footprints.clear();
+		dirty.clear();
+	}
+
+	@Override
+	public void entityAdded(Entity entity) {
+		Footprint f = new Footprint(entity, Mappers.brain.has(entity) ? ENEMIES : PLAYERS);
+		footprints.put(entity, f);
+		dirty.add(f);
+		CellComponent cell = Mappers.cell.get(entity);
+		invalidateNear(cell.x, cell.y);
+	}
+
+	@Override
+	public void entityRemoved(Entity entity) {
+		Footprint f = footprints.remove(entity);
+		if (f == null) { return; }
+		subtract(f);
+		dirty.removeValue(f, true);
+		invalidateNear(f.x, f.y);
+	}
+
+	/**
+	 * Tells the maps a character changed tile
+	 */
+	public void moved(Entity entity) {
+		Footprint f = footprints.get(entity);
+		if (f == null) { return; }
+		CellComponent cell = Mappers.cell.get(entity);
+		if (cell.x == f.x && cell.y == f.y) { return; }
+		invalidateNear(f.x, f.y);
+		invalidateNear(cell.x, cell.y);
+		markDirty(f);
+	}
+
+	/**
+	 * Tells the maps darkness was cleared, which the player's characters
+	 * can't move through
+	 */
+	public void darknessChanged() {
+		for (Footprint f : footprints.values()) {
+			if (f.team == PLAYERS) {
+				markDirty(f);
+			}
+		}
+	}
+
+	/**
+	 * @param team PLAYERS or ENEMIES
+	 * @return how many of the team's characters could attack the tile next turn
+	 */
+	public int getThreat(int team, int x, int y) {
+		update();
+		return inside(x, y) ? threat[team][x * height + y] : 0;
+	}
+
+	/**
+	 * @param team PLAYERS or ENEMIES
+	 * @return how many of the team's characters could move onto the tile next turn
+	 */
+	public int getSupport(int team, int x, int y) {
+		update();
+		return inside(x, y) ? support[team][x * height + y] : 0;
+	}
+
+	/**
+	 * @param team PLAYERS or ENEMIES
+	 * @return how strongly the team holds the tile, less how strongly the other
+	 * 		team does. Positive where the team is stronger.
+	 */
+	public int getControl(int team, int x, int y) {
+		update();
+		if (!inside(x, y)) { return 0; }
+		int i = x * height + y;
+		return influence[team][i] - influence[1 - team][i];
+	}
+
+	/**
+	 * Brings the grids up to date, searching from every character that has
+	 * moved, or could have been blocked or unblocked, since the last update
+	 */
+	public void update() {
+		MapInfo map = RPG.getCurrentMapInfo();
+		if (map.getWidth() != width || map.getHeight() != height) {
+			resize(map.getWidth(), map.getHeight());
+		}
+		if (dirty.size == 0) { return; }
+
+		for (int i = 0; i < dirty.size; i++) {
+			Footprint f = dirty.get(i);
+			subtract(f);
+			search(f, map);
+			add(f);
+			f.dirty = false;
+		}
+		dirty.clear();
+	}
+
+	private boolean inside(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	private void resize(int width, int height) {
+		this.width = width;
+		this.height = height;
+		for (int t = 0; t < 2; t++) {
+			threat[t] = new int[width * height];
+			support[t] = new int[width * height];
+			influence[t] = new int[width * height];
+		}
+		stamp = new int[width * height];
+		// nothing's been added to the new grids yet
+		for (Footprint f : footprints.values()) {
+			f.reach.clear();
+			f.reachLeft.clear();
+			f.threat.clear();
+			markDirty(f);
+		}
+	}
+
+	private void markDirty(Footprint f) {
+		if (!f.dirty) {
+			f.dirty = true;
+			dirty.add(f);
+		}
+	}
+
+	/**
+	 * Marks every character whose search could have passed through a tile
+	 */
+	private void invalidateNear(int x, int y) {
+		if (x < 0) { return; }
+		for (Footprint f : footprints.values()) {
+			// every move covers at least one tile on either axis
+			if (!f.dirty && Math.abs(f.x - x) <= f.speed + 1 && Math.abs(f.y - y) <= f.speed + 1) {
+				markDirty(f);
+			}
+		}
+	}
+
+	/**
+	 * Works out a character's footprint from where it is now
+	 */
+	private void search(Footprint f, MapInfo map) {
+		searchCounter.inc();
+		CharacterActor actor = Mappers.actor.get(f.entity).actor;
+		CellComponent cell = Mappers.cell.get(f.entity);
+		f.x = cell.x;
+		f.y = cell.y;
+		f.speed = Mappers.stats.get(f.entity).maxSpeed;
+		f.reach.clear();
+		f.reachLeft.clear();
+		f.threat.clear();
+		if (!inside(f.x, f.y)) { return; }
+
+		v.set(f.x, f.y);
+		Map<Vector2, Integer> tiles = Pathfinders.get().getAllSelectableTiles(actor, v, f.speed, map,
+				ActionProperties.getDefaultMoveProperty(f.team == PLAYERS));
+		f.reach.add(f.x * height + f.y);
+		f.reachLeft.add(f.speed);
+		for (Map.Entry<Vector2, Integer> t : tiles.entrySet()) {
+			int x = (int) t.getKey().x;
+			int y = (int) t.getKey().y;
+			if (x == f.x && y == f.y) { continue; }
+			f.reach.add(x * height + y);
+			f.reachLeft.add(t.getValue());
+		}
+
+		// anything in range of somewhere it can get to, as basic attacks only reach
+		// a tile or so
+		int range = actor.getBasicAttack() != null ? actor.getBasicAttack().range : 0;
+		if (range <= 0) { return; }
+		stampCount++;
+		for (int i = 0; i < f.reach.size; i++) {
+			int rx = f.reach.get(i) / height;
+			int ry = f.reach.get(i) % height;
+			for (int x = Math.max(0, rx - range); x <= Math.min(width - 1, rx + range); x++) {
+				for (int y = Math.max(0, ry - range); y <= Math.min(height - 1, ry + range); y++) {
+					int j = x * height + y;
+					if (stamp[j] != stampCount) {
+						stamp[j] = stampCount;
+						f.threat.add(j);
+					}
+				}
+			}
+		}
+	}
+
+	private void add(Footprint f) {
+		apply(f, 1);
+	}
+
+	private void subtract(Footprint f) {
+		apply(f, -1);
+	}
+
+	private void apply(Footprint f, int sign) {
+		int[] s = support[f.team];
+		int[] in = influence[f.team];
+		for (int i = 0; i < f.reach.size; i++) {
+			int j = f.reach.get(i);
+			s[j] += sign;
+			in[j] += sign * (f.reachLeft.get(i) + 1);
+		}
+		int[] t = threat[f.team];
+		for (int i = 0; i < f.threat.size; i++) {
+			t[f.threat.get(i)] += sign;
+		}
+	}
+}
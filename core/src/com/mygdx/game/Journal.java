@@ -0,0 +1,378 @@
+package com.mygdx.game;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.mygdx.game.Strategy.ActionStep;
+import com.mygdx.game.Strategy.MoveStep;
+import com.mygdx.game.Strategy.Step;
+
+/**
+ * Compact binary record of a battle: the seed it started from, every input the
+ * player made and every step executed by either team, plus a hash of the game
+ * state after each round. Since the game is deterministic for a seed, playing
+ * back the inputs with a Replayer repeats the battle exactly, which the recorded
+ * steps and hashes check.
+ *
+ * Format: int MAGIC, short VERSION, long seed, UTF map path, UTF pathfinder name,
+ * then records each starting with a tag byte, ending with END.
+ */
+public class Journal {
+	public static final int MAGIC = 0x4852504a;  // "HRPJ"
+	public static final int VERSION = 6;  // 2: enemies go in initiative order, 3: pathfinder recorded, 4: enemies weigh threat,
+			// 5: attack reach counts toward enemies playing alongside, 6: sight is a line of sight square
+			// worked out incrementally
+	public static final String EXTENSION = ".hrpj";
+
+	// record tags
+	static final byte END = 0;
+	static final byte STEP = 1;  // int actor id, step
+	static final byte INPUT = 2;  // int actor id, short step count, steps
+	static final byte END_TURN = 3;  // player ended their turn
+	static final byte HASH = 4;  // int turn, long state hash
+	static final byte PATHFINDER = 5;  // UTF name, player switched pathfinder
+
+	// step kinds
+	private static final byte MOVE = 0;
+	private static final byte ACTION = 1;
+
+	private static void writeStep(DataOutputStream out, CharacterActor actor, Step s) throws IOException {
+		if (s instanceof MoveStep) {
+			MoveStep ms = (MoveStep) s;
+			out.writeByte(MOVE);
+			out.writeShort((int) ms.stepLocation.x);
+			out.writeShort((int) ms.stepLocation.y);
+			out.writeShort(ms.cost);
+		} else {
+			ActionStep as = (ActionStep) s;
+			out.writeByte(ACTION);
+			out.writeInt(as.target != null ? as.target.getId() : -1);
+			out.writeShort((int) as.attackLocation.x);
+			out.writeShort((int) as.attackLocation.y);
+			out.writeByte(actor.getActionIndex(as.action));
+		}
+	}
+
+	private static Step readStep(DataInputStream in, CharacterActor actor, RPGStage stage) throws IOException {
+		byte kind = in.readByte();
+		if (kind == MOVE) {
+			int x = in.readShort();
+			int y = in.readShort();
+			return new MoveStep(x, y, in.readShort());
+		} else if (kind == ACTION) {
+			CharacterActor target = stage.getCharacter(in.readInt());
+			int x = in.readShort();
+			int y = in.readShort();
+			AttackAction a = actor.getAction(in.readByte());
+			if (target != null) {
+				return new ActionStep(target, a);
+			}
+			return new ActionStep(new Vector2(x, y), a);
+		}
+		throw new IOException("unknown step kind " + kind);
+	}
+
+	/**
+	 * Writes a journal as a battle is played. Everything goes through a buffer,
+	 * which is only flushed at the end of each round.
+	 */
+	public static class Recorder {
+		private DataOutputStream out;
+
+		/**
+		 * @param file file to write, replaced if it exists
+		 * @param seed seed the battle was started with
+		 * @param mapPath map the battle is on
+		 * @param pathfinder name of the pathfinder in use
+		 */
+		public Recorder(FileHandle file, long seed, String mapPath, String pathfinder) {
+			out = new DataOutputStream(new BufferedOutputStream(file.write(false), 8192));
+			try {
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeLong(seed);
+				out.writeUTF(mapPath);
+				out.writeUTF(pathfinder);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Records a step as it's executed
+		 */
+		public void step(CharacterActor actor, Step s) {
+			if (out == null) { return; }
+			try {
+				out.writeByte(STEP);
+				out.writeInt(actor.getId());
+				writeStep(out, actor, s);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Records a strategy the player chose, before any of it is executed
+		 */
+		public void input(CharacterActor actor, Strategy plan) {
+			if (out == null) { return; }
+			try {
+				out.writeByte(INPUT);
+				out.writeInt(actor.getId());
+				out.writeShort(plan.getNumSteps());
+				for (int i = 0; i < plan.getNumSteps(); i++) {
+					writeStep(out, actor, plan.getStep(i));
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		public void endTurn() {
+			if (out == null) { return; }
+			try {
+				out.writeByte(END_TURN);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+		
+		/**
+		 * Records a switch of pathfinder, since backends may pick different paths
+		 */
+		public void pathfinder(String name) {
+			if (out == null) { return; }
+			try {
+				out.writeByte(PATHFINDER);
+				out.writeUTF(name);
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Records the state hash at the start of a round
+		 */
+		public void hash(int turn, long hash) {
+			if (out == null) { return; }
+			try {
+				out.writeByte(HASH);
+				out.writeInt(turn);
+				out.writeLong(hash);
+				out.flush();
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+
+		public void close() {
+			if (out == null) { return; }
+			try {
+				out.writeByte(END);
+				out.close();
+			} catch (IOException e) {
+				Gdx.app.error("Journal", "couldn't close journal", e);
+			}
+			out = null;
+		}
+
+		private void fail(IOException e) {
+			Gdx.app.error("Journal", "stopped recording", e);
+			try {
+				out.close();
+			} catch (IOException ignored) {
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * Plays a journal back into a stage, feeding it the recorded inputs and
+	 * checking every step and hash against what was recorded. The stage should
+	 * have animation turned off, so a whole battle plays out in one frame.
+	 */
+	public static class Replayer {
+		private final long seed;
+		private final String mapPath;
+		private final String pathfinder;
+		private DataInputStream in;
+		private boolean finished;  // reached the end or diverged
+		private String failure;  // why the replay diverged, null if it hasn't
+
+		private long startTime;
+		private int stepsChecked, hashesChecked;
+
+		/**
+		 * Reads a whole journal into memory and checks its header
+		 * @throws IllegalArgumentException if the file isn't a journal this version can read
+		 */
+		public Replayer(FileHandle file) {
+			in = new DataInputStream(new ByteArrayInputStream(file.readBytes()));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IllegalArgumentException(file.path() + " is not a journal");
+				}
+				int version = in.readShort();
+				if (version != VERSION) {
+					throw new IllegalArgumentException(file.path() + " has journal version " + version);
+				}
+				seed = in.readLong();
+				mapPath = in.readUTF();
+				pathfinder = in.readUTF();
+			} catch (IOException e) {
+				throw new IllegalArgumentException(file.path() + " is not a journal", e);
+			}
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public String getMapPath() {
+			return mapPath;
+		}
+		
+		/**
+		 * @return name of the pathfinder the battle started with
+		 */
+		public String getPathfinder() {
+			return pathfinder;
+		}
+
+		public boolean isFinished() {
+			return finished;
+		}
+
+		/**
+		 * @return why the replay went differently from the recording, null if it hasn't
+		 */
+		public String getFailure() {
+			return failure;
+		}
+
+		/**
+		 * Applies the next recorded input to the stage, which must be waiting
+		 * on the player
+		 * @return false once there is nothing left to replay
+		 */
+		public boolean applyNext(RPGStage stage) {
+			if (finished) { return false; }
+			if (startTime == 0) {
+				startTime = System.nanoTime();
+			}
+			try {
+				byte tag = in.readByte();
+				if (tag == INPUT) {
+					CharacterActor actor = stage.getCharacter(in.readInt());
+					if (actor == null) {
+						return diverged("input for a character that isn't on the map");
+					}
+					int n = in.readShort();
+					Strategy plan = new Strategy();
+					for (int i = 0; i < n; i++) {
+						plan.addStep(readStep(in, actor, stage));
+					}
+					stage.executeStrategy(actor, plan);
+				} else if (tag == END_TURN) {
+					stage.endPlayerTurn();
+				} else if (tag == PATHFINDER) {
+					String name = in.readUTF();
+					if (!stage.setPathfinder(name)) {
+						return diverged("recorded with unknown pathfinder " + name);
+					}
+				} else if (tag == END) {
+					finish();
+					return false;
+				} else {
+					return diverged("expected player input, found record " + tag);
+				}
+			} catch (IOException e) {
+				return diverged("journal ended early");
+			}
+			return !finished;
+		}
+
+		/**
+		 * Checks a step about to be executed against the recording
+		 */
+		public void checkStep(RPGStage stage, CharacterActor actor, Step s) {
+			if (finished) { return; }
+			try {
+				byte tag = in.readByte();
+				if (tag != STEP) {
+					diverged("step " + s + " by " + actor + " wasn't recorded");
+					return;
+				}
+				int id = in.readInt();
+				Step recorded = readStep(in, actor, stage);
+				if (id != actor.getId() || !sameStep(s, recorded)) {
+					diverged("step " + s + " by " + actor + ", recorded " + recorded + " by " + id);
+					return;
+				}
+				stepsChecked++;
+			} catch (IOException e) {
+				diverged("journal ended early");
+			}
+		}
+
+		/**
+		 * Checks the state hash at the start of a round against the recording
+		 */
+		public void checkHash(int turn, long hash) {
+			if (finished) { return; }
+			try {
+				if (in.readByte() != HASH) {
+					diverged("round " + turn + " ended out of step with the recording");
+					return;
+				}
+				int recordedTurn = in.readInt();
+				long recordedHash = in.readLong();
+				if (recordedTurn != turn || recordedHash != hash) {
+					diverged("state hash differs at round " + turn);
+					return;
+				}
+				hashesChecked++;
+			} catch (IOException e) {
+				diverged("journal ended early");
+			}
+		}
+
+		private static boolean sameStep(Step a, Step b) {
+			if (a instanceof MoveStep && b instanceof MoveStep) {
+				MoveStep ma = (MoveStep) a;
+				MoveStep mb = (MoveStep) b;
+				return ma.stepLocation.epsilonEquals(mb.stepLocation) && ma.cost == mb.cost;
+			} else if (a instanceof ActionStep && b instanceof ActionStep) {
+				ActionStep aa = (ActionStep) a;
+				ActionStep ab = (ActionStep) b;
+				return aa.target == ab.target && aa.action == ab.action
+						&& aa.attackLocation.epsilonEquals(ab.attackLocation);
+			}
+			return false;
+		}
+
+		private boolean diverged(String why) {
+			failure = why;
+			finish();
+			return false;
+		}
+
+		private void finish() {
+			finished = true;
+			long ms = (System.nanoTime() - startTime) / 1000000;
+			if (failure == null) {
+				Gdx.app.log("Replay", "matched: " + stepsChecked + " steps, " + hashesChecked
+						+ " rounds in " + ms + "ms");
+			} else {
+				Gdx.app.error("Replay", "diverged after " + stepsChecked + " steps: " + failure);
+			}
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package com.mygdx.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.ProgressBar;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+import com.badlogic.gdx.utils.viewport.ScreenViewport;
+
+/**
+ * Shows progress while a game is set up. The map is compiled (or read from
+ * its cache) on a worker thread, then its MapInfo is built there too while
+ * textures stream into Assets on the render thread a few milliseconds per
+ * frame. Once both are done the parts of the RPG that need the render thread
+ * are set up a step per frame. Prints how long each phase took.
+ */
+public class LoadingScreen implements Screen {
+	public static final int UPLOAD_BUDGET_MS = 10;  // time per frame spent uploading textures
+	
+	// Textures every game needs, streamed in while the map compiles
+	public static final String[] PRELOAD_TEXTURES = {
+		"data/CharacterSprites/Moblin.png",
+		"data/CharacterSprites/SkeletonPunchingBag.png",
+		"data/UiData/attackIcon.png",
+		"data/MiscSprites/selector.png",
+		"data/MiscSprites/moveable.png",
+		"data/MiscSprites/attackable.png"
+	};
+	
+	private enum Phase {
+		MAP("Compiling map"), TEXTURES("Loading textures"), WORLD("Building world"), SETUP("Setting up"),
+		DONE("Done"), FAILED("Couldn't load the map");
+		
+		final String description;
+		
+		Phase(String description) {
+			this.description = description;
+		}
+	}
+	
+	private halfRPG parent;
+	private String mapPath;
+	private Stage stage;
+	private Skin skin;
+	private Label status;
+	private ProgressBar progress;
+	
+	private AsyncExecutor executor;
+	private AsyncResult<CompiledMap> mapResult;  // compiled map, done on worker thread
+	private CompiledMap compiledMap;
+	private AsyncResult<MapInfo> worldResult;  // info for compiledMap, done on worker thread
+	private RPG rpg;  // set up a step per frame once the world is built
+	private List<String> queued;  // textures this screen holds a reference to until done
+	
+	private Phase phase;
+	private long startTime;  // when loading began, in nanoseconds
+	private long phaseStart;  // when the current phase began
+	private long mapTime;  // time the worker spent on the map, overlaps texture loading
+	private long worldTime;  // time the worker spent on the map info, overlaps texture loading
+	
+	/**
+	 * Starts loading the game map and textures
+	 * @param program the parent program
+	 * @param mapPath internal path of the .tmx to play
+	 */
+	public LoadingScreen(halfRPG program, final String mapPath) {
+		parent = program;
+		this.mapPath = mapPath;
+		stage = new Stage(new ScreenViewport());
+		
+		// the game uses the same skin, holding it here keeps it loaded until the game has it
+		skin = Assets.getSkin(DamagePopups.SKIN_PATH);
+		Table table = new Table();
+		table.setFillParent(true);
+		status = new Label("", skin);
+		progress = new ProgressBar(0, 1, .01f, false, skin);
+		table.add(status);
+		table.row().pad(10, 0, 0, 0);
+		table.add(progress).width(300);
+		stage.addActor(table);
+		
+		startTime = System.nanoTime();
+		phaseStart = startTime;
+		phase = Phase.MAP;
+		
+		// CPU side map work doesn't need GL, so do it off the render thread
+		executor = new AsyncExecutor(1, "MapLoader");
+		mapResult = executor.submit(new AsyncTask<CompiledMap>() {
+			@Override
+			public CompiledMap call() {
+				long start = System.nanoTime();
+				CompiledMap m = CompiledMap.load(mapPath);
+				mapTime = System.nanoTime() - start;
+				return m;
+			}
+		});
+		
+		queued = new ArrayList<>();
+		for (String path : PRELOAD_TEXTURES) {
+			queue(path);
+		}
+	}
+	
+	/**
+	 * Loads the game's default map
+	 */
+	public LoadingScreen(halfRPG program) {
+		this(program, RPG.MAP_PATH);
+	}
+	
+	/**
+	 * Adds a texture to stream into Assets, held until loading is done
+	 */
+	private void queue(String path) {
+		queue(path, Texture.class);
+	}
+	
+	/**
+	 * Adds any asset to stream into Assets, held until loading is done
+	 */
+	private void queue(String path, Class<?> type) {
+		Assets.getManager().load(path, type);
+		queued.add(path);
+	}
+	
+	/**
+	 * Moves loading along as far as it can go in one frame
+	 */
+	private void update() {
+		AssetManager manager = Assets.getManager();
+		boolean texturesDone = manager.update(UPLOAD_BUDGET_MS);
+		
+		switch (phase) {
+			case MAP:
+				if (mapResult.isDone()) {
+					try {
+						compiledMap = mapResult.get();
+					} catch (GdxRuntimeException e) {
+						fail(e);
+						return;
+					}
+					// tilesets are only known once the map is compiled
+					for (String path : compiledMap.getTexturePaths()) {
+						queue(path);
+					}
+					logPhase("map (worker)", mapTime);
+					worldResult = executor.submit(new AsyncTask<MapInfo>() {
+						@Override
+						public MapInfo call() {
+							long start = System.nanoTime();
+							MapInfo info = new MapInfo(compiledMap);
+							// build the chunks enemies spawn in now, rather than on the first frame
+							for (int i = 0; i < compiledMap.spawns.length; i += 3) {
+								info.isWall(compiledMap.spawns[i], compiledMap.spawns[i + 1]);
+							}
+							worldTime = System.nanoTime() - start;
+							return info;
+						}
+					});
+					nextPhase(Phase.TEXTURES);
+				}
+				break;
+			case TEXTURES:
+				if (texturesDone) {
+					nextPhase(Phase.WORLD);
+				}
+				break;
+			case WORLD:
+				if (worldResult.isDone()) {
+					MapInfo info;
+					try {
+						info = worldResult.get();
+					} catch (GdxRuntimeException e) {
+						fail(e);
+						return;
+					}
+					logPhase("world (worker)", worldTime);
+					rpg = new RPG(parent, compiledMap, info, parent.getSeed());
+					nextPhase(Phase.SETUP);
+				}
+				break;
+			case SETUP:
+				// one step a frame, so no frame holds up the screen for long
+				if (rpg.setUpStep()) {
+					nextPhase(Phase.DONE);
+					logPhase("total", System.nanoTime() - startTime);
+					
+					for (String path : queued) {
+						Assets.release(path);
+					}
+					queued.clear();
+					parent.finishLoading(rpg);
+					return;
+				}
+				break;
+			case FAILED:
+				return;
+			default:
+				break;
+		}
+		
+		status.setText(phase.description + "...");
+		if (phase == Phase.SETUP) {
+			progress.setValue(rpg.getSetUpProgress());
+		} else {
+			progress.setValue(phase == Phase.MAP ? 0 : manager.getProgress());
+		}
+	}
+	
+	/**
+	 * Stops loading and shows why, i.e. the map couldn't be compiled
+	 */
+	private void fail(Exception e) {
+		Gdx.app.error("Loading", "couldn't load " + mapPath, e);
+		nextPhase(Phase.FAILED);
+		for (String path : queued) {
+			Assets.release(path);
+		}
+		queued.clear();
+		Throwable cause = e;
+		while (cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		status.setText(phase.description + ": " + cause.getMessage());
+		progress.setVisible(false);
+	}
+	
+	private void nextPhase(Phase next) {
+		long now = System.nanoTime();
+		logPhase(phase.description, now - phaseStart);
+		phaseStart = now;
+		phase = next;
+	}
+	
+	private void logPhase(String name, long nanos) {
+		Gdx.app.log("Loading", name + ": " + nanos / 1000000 + "ms");
+	}
+	
+	@Override
+	public void show() {
+		Gdx.input.setInputProcessor(stage);
+	}
+
+	@Override
+	public void render(float delta) {
+		// clear screen
+		Gdx.gl.glClearColor(0,  0,  0,  1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+		
+		update();
+		if (phase == Phase.DONE) {
+			return;
+		}
+		
+		stage.act(delta);
+		stage.draw();
+	}
+
+	@Override
+	public void resize(int width, int height) {
+		stage.getViewport().update(width, height, true); 
+	}
+
+	@Override
+	public void pause() {
+		// TODO Auto-generated method stub
+		
+	}
+
+	@Override
+	public void resume() {
+		// TODO Auto-generated method stub
+		
+	}
+
+	@Override
+	public void hide() {
+		// TODO Auto-generated method stub
+		
+	}
+
+	@Override
+	public void dispose() {
+		executor.dispose();
+		stage.dispose();
+		Assets.release(skin);
+	}
+}
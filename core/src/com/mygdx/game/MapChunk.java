@@ -0,0 +1,275 @@
+package com.mygdx.game;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * A square section of a map holding the layer tiles, composed cost/wall info
+ * and darkness for its cells. Chunks are built by MapInfo the first time any
+ * of their cells are looked at, and can be thrown away and rebuilt later.
+ * Changed chunks keep their Changes when they're thrown away.
+ */
+public class MapChunk {
+	/**
+	 * What a chunk holds that can't be rebuilt from the compiled map, kept
+	 * while the chunk itself is dropped. Only takes a bit per cell for
+	 * darkness and two ints per changed tile.
+	 */
+	static class Changes {
+		int cells;  // number of cells in the chunk
+		int[] edits;  // pairs of edit key (layer * cells + cell) and tile id, 0 for none
+		BitSet darkness;  // dark cells, null if all dark or darkness hadn't been added
+
+		/**
+		 * Drops changes to a layer added at runtime, i.e. once it's cleared
+		 */
+		void clearLayer(int layer) {
+			int n = 0;
+			for (int i = 0; i < edits.length; i += 2) {
+				if (edits[i] / cells != layer) {
+					edits[n++] = edits[i];
+					edits[n++] = edits[i + 1];
+				}
+			}
+			if (n < edits.length) {
+				int[] kept = new int[n];
+				System.arraycopy(edits, 0, kept, 0, n);
+				edits = kept;
+			}
+		}
+	}
+
+	public final int chunkX, chunkY;  // position of this chunk in chunks, not tiles
+	public final int originX, originY;  // tile position of this chunk's bottom left cell
+	public final int width, height;  // size in tiles, may be less than CHUNK_SIZE at map edges
+
+	private List<TileInfo[]> layerTiles;  // tiles for each layer, null if layer has none here
+	private int[] cost;  // composed speed to cross
+	private boolean[] wall;  // composed blocking
+	private boolean[] darkness;  // null until darkness is first added to the map
+	private IntIntMap edits;  // tile id (0 for none) of each changed layer cell, by layer * cells + cell, null if none
+
+	boolean dirty;  // has state that can't be rebuilt from the compiled map, saved when dropped
+	long lastUsed;  // access tick, for picking chunks to evict
+
+	/**
+	 * Creates an empty chunk, MapInfo is responsible for filling in layers
+	 * and composing it
+	 */
+	public MapChunk(int chunkX, int chunkY, int width, int height) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.originX = chunkX * MapInfo.CHUNK_SIZE;
+		this.originY = chunkY * MapInfo.CHUNK_SIZE;
+		this.width = width;
+		this.height = height;
+
+		layerTiles = new ArrayList<>();
+		cost = new int[width * height];
+		wall = new boolean[width * height];
+		dirty = false;
+	}
+
+	/**
+	 * @param x X value of a tile in the map (not chunk)
+	 * @param y Y value of a tile in the map (not chunk)
+	 * @return index of that tile in this chunk's arrays
+	 */
+	private int index(int x, int y) {
+		return (x - originX) * height + (y - originY);
+	}
+
+	/**
+	 * Sets all tiles for a layer at once, i.e. when first loading
+	 * @param layer index of the layer
+	 * @param tiles tiles for the layer, or null if the layer has nothing in this chunk
+	 */
+	void setLayer(int layer, TileInfo[] tiles) {
+		while (layerTiles.size() <= layer) {
+			layerTiles.add(null);
+		}
+		layerTiles.set(layer, tiles);
+	}
+
+	TileInfo getLayerTile(int layer, int x, int y) {
+		if (layer >= layerTiles.size() || layerTiles.get(layer) == null) {
+			return null;
+		}
+		return layerTiles.get(layer)[index(x, y)];
+	}
+
+	/**
+	 * Sets a single tile in a layer, recomposing that cell
+	 * @return the tile previously there
+	 */
+	TileInfo setLayerTile(int layer, int x, int y, TileInfo t) {
+		return setTile(layer, index(x, y), t);
+	}
+
+	private TileInfo setTile(int layer, int i, TileInfo t) {
+		while (layerTiles.size() <= layer) {
+			layerTiles.add(null);
+		}
+		TileInfo[] tiles = layerTiles.get(layer);
+		if (tiles == null) {
+			if (t == null) { return null; }
+			tiles = new TileInfo[width * height];
+			layerTiles.set(layer, tiles);
+		}
+		TileInfo old = tiles[i];
+		if (old != t) {
+			tiles[i] = t;
+			composeCell(i);
+			if (edits == null) {
+				edits = new IntIntMap();
+			}
+			edits.put(layer * cost.length + i, t == null ? 0 : t.getTiledId());
+		}
+		return old;
+	}
+
+	/**
+	 * Removes all tiles in a layer from this chunk, only recomposing
+	 * cells that had a tile
+	 */
+	void clearLayer(int layer) {
+		if (layer >= layerTiles.size() || layerTiles.get(layer) == null) {
+			return;
+		}
+		TileInfo[] tiles = layerTiles.get(layer);
+		layerTiles.set(layer, null);
+		for (int i = 0; i < tiles.length; i++) {
+			if (tiles[i] != null) {
+				composeCell(i);
+			}
+		}
+		// runtime layers start empty, so an empty one has no changes
+		if (edits != null) {
+			IntIntMap.Keys keys = edits.keys();
+			while (keys.hasNext) {
+				if (keys.next() / cost.length == layer) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Recomposes every cell in the chunk, should only be needed once
+	 * all layers are first set
+	 */
+	void composeAll() {
+		for (int i = 0; i < cost.length; i++) {
+			composeCell(i);
+		}
+	}
+
+	/**
+	 * Recomputes the cached cost and wall info for a single cell from all layers.
+	 * The cost of a cell is the highest cost of any tile on it, and it is a wall
+	 * if any tile on it is a wall.
+	 * @param i index of the cell in this chunk
+	 */
+	private void composeCell(int i) {
+		int c = 0;
+		boolean w = false;
+		for (TileInfo[] tiles : layerTiles) {
+			if (tiles != null && tiles[i] != null) {
+				c = Math.max(c, tiles[i].getSpeedToCross());
+				w = w || tiles[i].isWall();
+			}
+		}
+		cost[i] = c;
+		wall[i] = w;
+	}
+
+	/**
+	 * Sets the composed info for a cell directly, i.e. from precompiled terrain,
+	 * instead of composing it from layers
+	 */
+	void setComposed(int x, int y, int c, boolean w) {
+		int i = index(x, y);
+		cost[i] = c;
+		wall[i] = w;
+	}
+
+	int getCost(int x, int y) {
+		return cost[index(x, y)];
+	}
+
+	boolean isWall(int x, int y) {
+		return wall[index(x, y)];
+	}
+
+	/**
+	 * Covers the whole chunk in darkness, allocating the darkness grid if needed
+	 */
+	void fillDarkness() {
+		if (darkness == null) {
+			darkness = new boolean[width * height];
+		}
+		for (int i = 0; i < darkness.length; i++) {
+			darkness[i] = true;
+		}
+	}
+
+	boolean isDarkness(int x, int y) {
+		return darkness != null && darkness[index(x, y)];
+	}
+
+	/**
+	 * @return true if the tile was covered by darkness before this call
+	 */
+	boolean removeDarkness(int x, int y) {
+		if (darkness == null) { return false; }
+		int i = index(x, y);
+		boolean wasDark = darkness[i];
+		darkness[i] = false;
+		return wasDark;
+	}
+
+	/**
+	 * @return the changes to this chunk, to be given to restore once it's rebuilt
+	 */
+	Changes save() {
+		Changes s = new Changes();
+		s.cells = cost.length;
+		s.edits = new int[edits == null ? 0 : edits.size * 2];
+		if (edits != null) {
+			int n = 0;
+			for (IntIntMap.Entry e : edits.entries()) {
+				s.edits[n++] = e.key;
+				s.edits[n++] = e.value;
+			}
+		}
+		if (darkness != null) {
+			s.darkness = new BitSet(darkness.length);
+			for (int i = 0; i < darkness.length; i++) {
+				if (darkness[i]) {
+					s.darkness.set(i);
+				}
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Puts back changes saved before this chunk was dropped. Should be called
+	 * once its layers are set and composed.
+	 */
+	void restore(Changes s) {
+		for (int i = 0; i < s.edits.length; i += 2) {
+			setTile(s.edits[i] / cost.length, s.edits[i] % cost.length, TileInfo.getTile(s.edits[i + 1]));
+		}
+		if (s.darkness != null) {
+			darkness = new boolean[width * height];
+			for (int i = 0; i < darkness.length; i++) {
+				darkness[i] = s.darkness.get(i);
+			}
+		}
+		dirty = true;
+	}
+}
@@ -1,37 +1,124 @@
 package com.mygdx.game;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
-import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 import com.badlogic.gdx.math.Vector2;
 
 /**
  * Stores all relevant info for a map and provides an API for getting
- * relevant information about a given tile. Loads based off of a tiledMap.
+ * relevant information about a given tile. Loads based off of a CompiledMap,
+ * no TiledMap is needed.
  * 
- * TODO: Add multi-layer support, make setup run off xml etc., allow for temp
- * effects
+ * Every tile layer in the map (other than markers) is kept as its own
+ * Layer, and the layers are composed into a cached cost and wall grid so 
+ * lookups during pathfinding never have to look at individual layers. Extra
+ * layers can be added at runtime for temporary effects, and changing a tile
+ * in any layer only recomposes that one cell.
+ * 
+ * Cell info is stored in CHUNK_SIZE square MapChunks which are only built
+ * from the compiled map the first time one of their cells is looked at, so
+ * big maps don't pay for areas nobody has gone near. Once more than 
+ * maxLoadedChunks are built, chunks furthest from the focus are dropped and
+ * rebuilt if needed. Changed chunks (explored or with temp effects) keep just
+ * their MapChunk.Changes while dropped. The map is drawn a chunk at a time by
+ * ChunkedMapRenderer; pathfinding, vision and influence grids are still sized
+ * to the whole map.
+ * 
+ * TODO: make setup run off xml etc.
  *
  */
 public class MapInfo {
-	private TiledMap tiledMap;  
-	private TileInfo[][] infoMap;  // 2D map array of tiles reflecting the tiledMap
-	private boolean[][] darknessMap;
+	public static final String MARKER_LAYER = "Markers";  // spawn markers, not terrain
+	public static final int CHUNK_SIZE = 32;  // width and height of a chunk in tiles
+	public static final int DEFAULT_MAX_LOADED_CHUNKS = 256;
+	
+	/**
+	 * A single layer of tiles (terrain, props, effects, etc.) that is
+	 * composed with all other layers to get the info for a cell. Chunks of
+	 * layers from the map are built from the compiled map's tile ids, layers
+	 * added at runtime start empty.
+	 */
+	public static class Layer {
+		public final String name;
+		public final boolean fromMap;  // false if added at runtime
+		
+		public Layer(String name, boolean fromMap) {
+			this.name = name;
+			this.fromMap = fromMap;
+		}
+	}
+	
+	/**
+	 * Game info for a Tiled tile id. Used to set up TileInfo, and by
+	 * CompiledMap to compile terrain without loading the TiledMap.
+	 * 
+	 * TODO: Make this load from some document which defines tile info / tileId
+	 */
+	public static class TileType {
+		public final String name;
+		public final int tiledId;
+		public final int speedToCross;
+		public final boolean isWall;
+		
+		public TileType(String name, int tiledId, int speedToCross, boolean isWall) {
+			this.name = name;
+			this.tiledId = tiledId;
+			this.speedToCross = speedToCross;
+			this.isWall = isWall;
+		}
+	}
+	
+	public static final TileType[] TILE_TYPES = {
+		new TileType("floor", 3, 1, false),
+		new TileType("wall", 1, 1, true),
+		new TileType("barrel", 2, 2, false)
+	};
+	
+	private CompiledMap compiledMap;  // layers, precompiled terrain and regions
+	private boolean regionsValid;  // false once walls change from the compiled map
+	private int wallVersion;  // changes whenever any wall is added or removed
+	private List<Layer> layers;  // all layers, index 0 is the base terrain
+	private int width, height;  // map size in tiles
+	private MapChunk[][] chunks;  // null until built
+	private MapChunk.Changes[][] savedChanges;  // changes of dropped chunks, null if none
+	private List<MapChunk> loadedChunks;
+	private int maxLoadedChunks;
+	private long accessTick;
+	private int focusX, focusY;  // tile eviction distance is measured from
+	private boolean darknessAdded;
 	private Set<CharacterActor> characters;
 	
 	/**
-	 * Generates a 2D array of tiles with all relevant game info based off a given TiledMap
-	 * @param base The TileMap being used
+	 * Sets up layers for a compiled map. No cell info is built until it is
+	 * first asked for, and then uses precompiled terrain and regions instead
+	 * of composing layers where it can. Needs no textures, so can be done
+	 * off the render thread.
+	 * @param compiled The map being used
 	 */
-	public MapInfo(TiledMap base) {
+	public MapInfo(CompiledMap compiled) {
 		characters = new HashSet<>();
-		tiledMap = base;
+		compiledMap = compiled;
+		regionsValid = true;
 		setupTiles();
-		infoMap = MapInfo.getInfoForLayer((TiledMapTileLayer) tiledMap.getLayers().get(0));
+		layers = new ArrayList<>();
+		for (CompiledMap.Layer l : compiledMap.layers) {
+			layers.add(new Layer(l.name, true));
+		}
+		
+		width = compiledMap.width;
+		height = compiledMap.height;
+		chunks = new MapChunk[(width + CHUNK_SIZE - 1) / CHUNK_SIZE][(height + CHUNK_SIZE - 1) / CHUNK_SIZE];
+		savedChanges = new MapChunk.Changes[chunks.length][chunks[0].length];
+		loadedChunks = new ArrayList<>();
+		maxLoadedChunks = DEFAULT_MAX_LOADED_CHUNKS;
+		accessTick = 0;
+		darknessAdded = false;
 	}
 	
 	/**
@@ -61,7 +148,7 @@ public class MapInfo {
 	}
 	
 	public boolean empty(Vector2 v) {
-		return !getTileInfo(v).isWall() && !getCharacterPositions().contains(v);
+		return !isWall(v) && !getCharacterPositions().contains(v);
 	}
 	
 	public Set<Vector2> getSelectedCharacterPositions(Class type) {
@@ -112,28 +199,291 @@ public class MapInfo {
 	
 	
 	/**
-	 * @return the TiledMap this class is based off of
+	 * @return the compiled map this class is based off of
 	 */
-	public TiledMap getTiledMap() {
-		return tiledMap;
+	public CompiledMap getCompiledMap() {
+		return compiledMap;
 	}
 	
 	/**
-	 * Defines the attributes of each TiledMap tile based on it's id. 
-	 * 
-	 * TODO: Make this load from some document which defines tile info / tileId
+	 * Defines the attributes of each Tiled tile based on it's id. 
 	 */
 	private void setupTiles() {
-		TileInfo.setupTile("floor", 1, false, tiledMap.getTileSets().getTile(3));
-		TileInfo.setupTile("wall", 1, true, tiledMap.getTileSets().getTile(1));
+		for (TileType t : TILE_TYPES) {
+			TileInfo.setupTile(t.name, t.speedToCross, t.isWall, t.tiledId);
+		}
+	}
+	
+	/**
+	 * @param tiledId id of a Tiled tile
+	 * @return the type of tile with that id, or null if it has no game info
+	 */
+	public static TileType getTileType(int tiledId) {
+		for (TileType t : TILE_TYPES) {
+			if (t.tiledId == tiledId) {
+				return t;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return a hash of all tile types, so compiled terrain can tell if it is out of date
+	 */
+	public static int getTileTypesHash() {
+		int hash = 1;
+		for (TileType t : TILE_TYPES) {
+			hash = 31 * hash + t.name.hashCode();
+			hash = 31 * hash + t.tiledId;
+			hash = 31 * hash + t.speedToCross;
+			hash = 31 * hash + (t.isWall ? 1 : 0);
+		}
+		return hash;
+	}
+	
+	/**
+	 * Gets the chunk holding a tile, building it if this is the first time
+	 * it's been needed. Tile must be in map bounds.
+	 * @param x X value of a tile in the map
+	 * @param y Y value of a tile in the map
+	 * @return the chunk holding the tile
+	 */
+	private MapChunk getChunk(int x, int y) {
+		MapChunk c = chunks[x / CHUNK_SIZE][y / CHUNK_SIZE];
+		if (c == null) {
+			c = loadChunk(x / CHUNK_SIZE, y / CHUNK_SIZE);
+		}
+		c.lastUsed = accessTick++;
+		return c;
+	}
+	
+	/**
+	 * @return the chunk holding a tile, or null if it hasn't been built
+	 */
+	private MapChunk getLoadedChunk(int x, int y) {
+		return chunks[x / CHUNK_SIZE][y / CHUNK_SIZE];
+	}
+	
+	/**
+	 * Builds a chunk from the compiled map's layers, putting back any changes
+	 * saved when it was last dropped, and evicting another chunk if too many
+	 * are loaded
+	 * @param cx X value of the chunk (in chunks)
+	 * @param cy Y value of the chunk (in chunks)
+	 * @return the new chunk
+	 */
+	private MapChunk loadChunk(int cx, int cy) {
+		MapChunk c = new MapChunk(cx, cy, Math.min(CHUNK_SIZE, width - cx * CHUNK_SIZE),
+				Math.min(CHUNK_SIZE, height - cy * CHUNK_SIZE));
+		for (int i = 0; i < layers.size(); i++) {
+			if (layers.get(i).fromMap) {
+				c.setLayer(i, getInfoForChunk(compiledMap.layers.get(i), height, c, i == 0));
+			}
+		}
+		if (compiledMap != null && compiledMap.hasTerrain()) {
+			for (int x = c.originX; x < c.originX + c.width; x++) {
+				for (int y = c.originY; y < c.originY + c.height; y++) {
+					c.setComposed(x, y, compiledMap.getCost(x, y), compiledMap.isWall(x, y));
+				}
+			}
+		} else {
+			c.composeAll();
+		}
+		if (darknessAdded) {
+			c.fillDarkness();
+		}
+		if (savedChanges[cx][cy] != null) {
+			c.restore(savedChanges[cx][cy]);
+			savedChanges[cx][cy] = null;
+		}
+		
+		chunks[cx][cy] = c;
+		loadedChunks.add(c);
+		if (loadedChunks.size() > maxLoadedChunks) {
+			evictChunk(c);
+		}
+		return c;
+	}
+	
+	/**
+	 * Drops the chunk furthest from the focus tile. Chunks with changes
+	 * (i.e. explored or with temp effects) keep their changes to be put 
+	 * back when they're rebuilt.
+	 * @param keep a chunk that shouldn't be dropped (i.e. was just loaded)
+	 * @return true if a chunk was dropped
+	 */
+	private boolean evictChunk(MapChunk keep) {
+		MapChunk furthest = null;
+		int furthestDist = -1;
+		for (MapChunk c : loadedChunks) {
+			if (c == keep) { continue; }
+			int dist = Math.abs(c.originX + c.width / 2 - focusX) 
+					 + Math.abs(c.originY + c.height / 2 - focusY);
+			if (dist > furthestDist || (dist == furthestDist && c.lastUsed < furthest.lastUsed)) {
+				furthest = c;
+				furthestDist = dist;
+			}
+		}
+		if (furthest == null) {
+			return false;
+		}
+		loadedChunks.remove(furthest);
+		chunks[furthest.chunkX][furthest.chunkY] = null;
+		if (furthest.dirty) {
+			savedChanges[furthest.chunkX][furthest.chunkY] = furthest.save();
+		}
+		return true;
+	}
+	
+	/**
+	 * Sets the tile chunks are kept near, i.e. the center of the camera.
+	 * @param x X value of a tile in the map
+	 * @param y Y value of a tile in the map
+	 */
+	public void setFocus(int x, int y) {
+		focusX = x;
+		focusY = y;
+	}
+	
+	/**
+	 * Sets how many chunks can be built at once before the furthest get dropped
+	 * @param max the new maximum
+	 */
+	public void setMaxLoadedChunks(int max) {
+		maxLoadedChunks = max;
+		while (loadedChunks.size() > maxLoadedChunks && evictChunk(null)) {}
+	}
+	
+	public int getNumLoadedChunks() {
+		return loadedChunks.size();
+	}
+	
+	/**
+	 * Adds a new empty layer on top of all others, i.e. for temporary effects 
+	 * like fire or difficult terrain
+	 * @param name name of the layer
+	 * @return index of the new layer
+	 */
+	public int addLayer(String name) {
+		layers.add(new Layer(name, false));
+		return layers.size() - 1;
+	}
+	
+	/**
+	 * @param name name of a layer
+	 * @return index of the first layer with that name, or -1 if there is none
+	 */
+	public int getLayerIndex(String name) {
+		for (int i = 0; i < layers.size(); i++) {
+			if (layers.get(i).name.equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	public Layer getLayer(int index) {
+		return layers.get(index);
+	}
+	
+	public int getNumLayers() {
+		return layers.size();
+	}
+	
+	/**
+	 * @param layer index of the layer
+	 * @param x X value of the cell
+	 * @param y Y value of the cell
+	 * @return the tile in the layer at that cell, or null if there is none
+	 */
+	public TileInfo getLayerTile(int layer, int x, int y) {
+		return getChunk(x, y).getLayerTile(layer, x, y);
+	}
+	
+	/**
+	 * Sets a tile in a layer, updating the cached info for only that cell
+	 * @param layer index of the layer
+	 * @param x X value of the cell
+	 * @param y Y value of the cell
+	 * @param t the new tile, or null to remove the layer's tile at that cell
+	 * @return the tile previously in the layer at that cell
+	 */
+	public TileInfo setLayerTile(int layer, int x, int y, TileInfo t) {
+		MapChunk c = getChunk(x, y);
+		c.dirty = true;
+		boolean wasWall = c.isWall(x, y);
+		TileInfo old = c.setLayerTile(layer, x, y, t);
+		if (wasWall != c.isWall(x, y)) {
+			regionsValid = false;
+			wallVersion++;
+		}
+		return old;
+	}
+	
+	/**
+	 * Removes every tile from a layer added at runtime, updating only the
+	 * cells it covered. Only built chunks and the changes of dropped ones are
+	 * touched, since runtime layers can only have tiles where chunks were built.
+	 * @param layer index of the layer
+	 */
+	public void clearLayer(int layer) {
+		assert !layers.get(layer).fromMap : "Can only clear layers added at runtime";
+		for (MapChunk c : loadedChunks) {
+			c.clearLayer(layer);
+		}
+		for (MapChunk.Changes[] column : savedChanges) {
+			for (MapChunk.Changes s : column) {
+				if (s != null) {
+					s.clearLayer(layer);
+				}
+			}
+		}
+		regionsValid = false;
+		wallVersion++;
+	}
+	
+	/**
+	 * @return a number that changes whenever walls on the map change, so
+	 * 		anything cached from walls (i.e. sight) knows when it's out of date
+	 */
+	public int getWallVersion() {
+		return wallVersion;
+	}
+	
+	/**
+	 * Gets which connected region of the map a tile is in. Tiles in different
+	 * regions can never reach each other without going through walls.
+	 * @param v A vector representing a tile position on the map
+	 * @return the region, 0 for walls, or -1 if unknown (no compiled regions,
+	 * 		walls have changed, or out of bounds)
+	 */
+	public int getRegion(Vector2 v) {
+		int x = (int) v.x;
+		int y = (int) v.y;
+		if (!regionsValid || !inMapBounds(x, y)) {
+			return -1;
+		}
+		return compiledMap.getRegion(x, y);
 	}
 	
 	public boolean inMapBounds(Vector2 v) {
-		return (v.x >= 0 && v.x < infoMap.length) && (v.y >= 0 && v.y < infoMap[0].length);
+		return inMapBounds((int) v.x, (int) v.y);
+	}
+	
+	public boolean inMapBounds(int x, int y) {
+		return (x >= 0 && x < width) && (y >= 0 && y < height);
 	}
 	
 	public Vector2 getMapSize() {
-		return new Vector2(infoMap.length, infoMap[0].length);
+		return new Vector2(width, height);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
 	}
 	
 	/**
@@ -161,10 +511,10 @@ public class MapInfo {
 	 *  location's TileInfo
 	 */
 	public TileInfo getTileInfo(int x, int y) {
-		if (x < 0 || x > infoMap.length || y < 0 || y > infoMap[x].length) {
+		if (!inMapBounds(x, y)) {
 			return null;
 		} else {
-			return infoMap[x][y];
+			return getChunk(x, y).getLayerTile(0, x, y);
 		}
 	}
 	
@@ -175,50 +525,58 @@ public class MapInfo {
 	 * 	location's speed to cross
 	 */
 	public int getTileSpeedToCross(int x, int y) {
-		TileInfo t = this.getTileInfo(x, y);
-		if (t == null) {
+		if (!inMapBounds(x, y)) {
 			return -1;
 		} else {
-			return t.getSpeedToCross();
+			return getChunk(x, y).getCost(x, y);
 		}
 	}
 	
 	/**
-	 * Returns a 2D array of TileInfo reflecting a layer in a TiledMap
-	 * @param layer A TiledMap's layer you want to load 
-	 * @return A 2D array of TileInfo for that layer
+	 * @param v A vector representing a tile position on the map
+	 * @return true if any layer has a wall at that location, or it's off the map
 	 */
-	public static TileInfo[][] getInfoForLayer(TiledMapTileLayer layer) {
-		TileInfo[][] newMap = new TileInfo[layer.getWidth()][layer.getHeight()];
-		for (int x = 0; x < layer.getWidth(); x++) {
-			for (int y = 0; y < layer.getHeight(); y++) {
-				TileInfo t = TileInfo.getTile(layer.getCell(x, y).getTile().getId());
-				assert t != null : "Tile ID not loaded before being placed";
-				newMap[x][y] = t;
-			}
+	public boolean isWall(Vector2 v) {
+		return isWall((int) v.x, (int) v.y);
+	}
+	
+	/**
+	 * @param x The x value of a tile position on the map
+	 * @param y The y value of a tile position on the map
+	 * @return true if any layer has a wall at that location, or it's off the map
+	 */
+	public boolean isWall(int x, int y) {
+		if (!inMapBounds(x, y)) {
+			return true;
 		}
-		return newMap;
+		return getChunk(x, y).isWall(x, y);
 	}
 	
 	/**
-	 * Given an attack at a location handles it by passing it to
-	 * the actor at the location (if one exists)
-	 * TODO: Add AOE support 
-	 * 
-	 * @param location Location tile of the attack
-	 * @param a Info about the attack
-	 * @return The attackCharacter targeted, or null if there was none
-	 *   at that position
-	 */
-	public CharacterActor handleAttack(Vector2 location, AttackAction a) {
-		/*for (CharacterActor c : characters) {
-			if (c.getCell().equals(location)) {
-				int hp = c.handleAttack(a);
-				
-				return c;
+	 * Returns the TileInfo for every cell of a chunk in a compiled layer
+	 * @param layer A compiled layer you want to load
+	 * @param mapHeight height of the map in tiles, for indexing the layer
+	 * @param c The chunk to load tiles for
+	 * @param base If this is the base terrain layer, where every cell must have a tile. 
+	 * 		Otherwise empty cells and tiles without any game info (i.e. decoration) are left null.
+	 * @return TileInfo for the chunk's cells, in the chunk's order, or null if
+	 * 		the layer has no tiles in the chunk 
+	 */
+	public static TileInfo[] getInfoForChunk(CompiledMap.Layer layer, int mapHeight, MapChunk c, boolean base) {
+		TileInfo[] tiles = new TileInfo[c.width * c.height];
+		boolean empty = true;
+		for (int x = 0; x < c.width; x++) {
+			for (int y = 0; y < c.height; y++) {
+				int gid = layer.gids[(c.originX + x) * mapHeight + c.originY + y];
+				if (gid != 0) {
+					TileInfo t = TileInfo.getTile(CompiledMap.getTileId(gid));
+					tiles[x * c.height + y] = t;
+					empty = empty && t == null;
+				}
+				assert !base || tiles[x * c.height + y] != null : "Tile ID not loaded before being placed";
 			}
-		}*/
-		return null;
+		}
+		return empty ? null : tiles;
 	}
 	
 	/**
@@ -232,19 +590,35 @@ public class MapInfo {
 	/**
 	 * @param x X value of a tile in map
 	 * @param y Y value of a tile in map
-	 * @return If the tile is covered by darkness
+	 * @return If the tile is covered by darkness. Chunks that haven't been 
+	 * 		built yet are all darkness, and aren't built just to check.
 	 */
 	public boolean isDarkness(int x, int y) {
-		return darknessMap != null && darknessMap[x][y];
+		if (!darknessAdded) { return false; }
+		MapChunk c = getLoadedChunk(x, y);
+		if (c != null) {
+			return c.isDarkness(x, y);
+		}
+		MapChunk.Changes s = savedChanges[x / CHUNK_SIZE][y / CHUNK_SIZE];
+		return s == null || s.darkness == null || s.darkness.get(getChunkIndex(x, y));
+	}
+	
+	/**
+	 * @return index of a tile in the arrays of the chunk holding it
+	 */
+	private int getChunkIndex(int x, int y) {
+		int chunkHeight = Math.min(CHUNK_SIZE, height - y / CHUNK_SIZE * CHUNK_SIZE);
+		return x % CHUNK_SIZE * chunkHeight + y % CHUNK_SIZE;
 	}
 	
 	/**
 	 * Removes darkness from a given tile. Note this only effects
 	 * logic, not display
 	 * @param v Location of tile to remove darkness from
+	 * @return true if the tile was covered by darkness
 	 */
-	public void removeDarkness(Vector2 v) {
-		removeDarkness((int) v.x, (int) v.y);
+	public boolean removeDarkness(Vector2 v) {
+		return removeDarkness((int) v.x, (int) v.y);
 	}
 	
 	/**
@@ -252,22 +626,77 @@ public class MapInfo {
 	 * logic, not display
 	 * @param x X location of tile to remove darkness from
 	 * @param y Y Location of tile to remove darkness from
+	 * @return true if the tile was covered by darkness
+	 */
+	public boolean removeDarkness(int x, int y) {
+		MapChunk c = getChunk(x, y);
+		if (c.removeDarkness(x, y)) {
+			c.dirty = true;  // explored state can't be rebuilt
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Copies which tiles are covered by darkness, only looking at built chunks
+	 * and the changes of dropped ones since the rest are all darkness
+	 * @param out set to fill, indexed x * height + y
+	 */
+	public void getDarkness(BitSet out) {
+		out.clear();
+		if (!darknessAdded) { return; }
+		out.set(0, width * height);
+		for (MapChunk c : loadedChunks) {
+			for (int x = c.originX; x < c.originX + c.width; x++) {
+				for (int y = c.originY; y < c.originY + c.height; y++) {
+					if (!c.isDarkness(x, y)) {
+						out.clear(x * height + y);
+					}
+				}
+			}
+		}
+		for (int cx = 0; cx < savedChanges.length; cx++) {
+			for (int cy = 0; cy < savedChanges[cx].length; cy++) {
+				if (savedChanges[cx][cy] == null || savedChanges[cx][cy].darkness == null) { continue; }
+				for (int x = cx * CHUNK_SIZE; x < Math.min(width, (cx + 1) * CHUNK_SIZE); x++) {
+					for (int y = cy * CHUNK_SIZE; y < Math.min(height, (cy + 1) * CHUNK_SIZE); y++) {
+						if (!isDarkness(x, y)) {
+							out.clear(x * height + y);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Covers the map in darkness, then clears it from every tile not in dark
+	 * @param dark tiles covered by darkness, indexed x * height + y
 	 */
-	public void removeDarkness(int x, int y) {
-		// prob will throw exception if addDarkness not called first
-		darknessMap[x][y] = false;
+	public void setDarkness(BitSet dark) {
+		addDarkness();
+		int size = width * height;
+		for (int i = dark.nextClearBit(0); i < size; i = dark.nextClearBit(i + 1)) {
+			removeDarkness(i / height, i % height);
+		}
 	}
 	
 	/**
 	 * Adds darkness over the entire map. Note this must be called
 	 * before darkness is attempted to be removed. Also only effects
-	 * logic, not display
+	 * logic, not display. Only built chunks and the changes of dropped ones
+	 * are filled, the rest are filled when they're built.
 	 */
 	public void addDarkness() {
-		darknessMap = new boolean[infoMap.length][infoMap[0].length];
-		for (int x = 0; x < darknessMap.length; x++) {
-			for (int y = 0; y < darknessMap[0].length; y++) {
-				darknessMap[x][y] = true;
+		darknessAdded = true;
+		for (MapChunk c : loadedChunks) {
+			c.fillDarkness();
+		}
+		for (MapChunk.Changes[] column : savedChanges) {
+			for (MapChunk.Changes s : column) {
+				if (s != null) {
+					s.darkness = null;  // all dark, same as a chunk filled when it's built
+				}
 			}
 		}
 	}
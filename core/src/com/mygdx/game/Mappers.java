@@ -0,0 +1,15 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.ComponentMapper;
+
+/**
+ * Shared mappers for fast component lookup on entities
+ */
+public class Mappers {
+	public static final ComponentMapper<CellComponent> cell = ComponentMapper.getFor(CellComponent.class);
+	public static final ComponentMapper<StatsComponent> stats = ComponentMapper.getFor(StatsComponent.class);
+	public static final ComponentMapper<VisionComponent> vision = ComponentMapper.getFor(VisionComponent.class);
+	public static final ComponentMapper<BrainComponent> brain = ComponentMapper.getFor(BrainComponent.class);
+	public static final ComponentMapper<SpriteComponent> sprite = ComponentMapper.getFor(SpriteComponent.class);
+	public static final ComponentMapper<ActorComponent> actor = ComponentMapper.getFor(ActorComponent.class);
+}
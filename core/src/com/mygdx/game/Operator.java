@@ -1,6 +1,5 @@
 package com.mygdx.game;
 
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Set;
@@ -20,7 +19,7 @@ public abstract class Operator {
 	
 	public Operator(RPGStage stage) {
 		this.stage = stage;
-		this.actors = new HashSet<>();
+		this.actors = new LinkedHashSet<>();  // keeps turn order the same every run
 	}
 	
 	public void setOtherOp(Operator other) {
@@ -38,7 +37,6 @@ public abstract class Operator {
 		if (actors.contains(a)) {
 			int dmg = a.handleAttack(p);
 			if (a.getHealth() == 0) {
-				System.out.println("enemy dead");
 				this.actorDeath(a);
 				otherOp.actorDeath(a);
 			}
@@ -0,0 +1,137 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Draws every move and attack choice tile as one actor from a grid of per 
+ * tile state, rather than an actor per tile. Selections are looked up
+ * straight from the grid by tile, so they never need Stage.hit.
+ */
+public class OverlayLayer extends Actor {
+	private static final byte NONE = 0, MOVE = 1, ATTACK = 2;
+	
+	private final int width, height;
+	private byte[] state;  // what's on each tile, x * height + y
+	private int[] cost;  // moves left after moving to each MOVE tile
+	private IntArray activeCells;  // indices of every tile that isn't NONE
+	
+	private CharacterActor moveOrigin;  // character the move tiles are for
+	private CharacterActor attackOrigin;  // character the attack tiles are for
+	private AttackAction attack;  // attack the attack tiles are for
+	private Texture moveTexture, attackTexture;
+	
+	private SelectableActionActor selection;  // reused to return selections
+	
+	/**
+	 * @param width width of the map in tiles
+	 * @param height height of the map in tiles
+	 */
+	public OverlayLayer(int width, int height, Texture moveTexture, Texture attackTexture) {
+		this.width = width;
+		this.height = height;
+		this.moveTexture = moveTexture;
+		this.attackTexture = attackTexture;
+		state = new byte[width * height];
+		cost = new int[width * height];
+		activeCells = new IntArray();
+		selection = new SelectableActionActor();
+		setTouchable(Touchable.disabled);
+	}
+	
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+	
+	private void set(int x, int y, byte s, int c) {
+		if (!inBounds(x, y)) { return; }
+		int i = x * height + y;
+		if (state[i] == NONE) {
+			activeCells.add(i);
+		}
+		state[i] = s;
+		cost[i] = c;
+	}
+	
+	/**
+	 * Marks a tile as a place a character can move to
+	 * @param origin the character moving
+	 * @param v the tile
+	 * @param movesLeft moves left after moving there
+	 */
+	public void addMove(CharacterActor origin, Vector2 v, int movesLeft) {
+		addMove(origin, (int) v.x, (int) v.y, movesLeft);
+	}
+	
+	public void addMove(CharacterActor origin, int x, int y, int movesLeft) {
+		moveOrigin = origin;
+		set(x, y, MOVE, movesLeft);
+	}
+	
+	/**
+	 * Marks a tile as one a character can attack
+	 * @param origin the character attacking
+	 * @param v the tile
+	 * @param a the attack
+	 */
+	public void addAttack(CharacterActor origin, Vector2 v, AttackAction a) {
+		attackOrigin = origin;
+		attack = a;
+		set((int) v.x, (int) v.y, ATTACK, 0);
+	}
+	
+	/**
+	 * Removes every tile, only touching tiles that were set
+	 */
+	public void clearTiles() {
+		for (int i = 0; i < activeCells.size; i++) {
+			state[activeCells.get(i)] = NONE;
+		}
+		activeCells.clear();
+		moveOrigin = null;
+		attackOrigin = null;
+		attack = null;
+	}
+	
+	public boolean isEmpty() {
+		return activeCells.size == 0;
+	}
+	
+	/**
+	 * Looks up what can be selected on a tile
+	 * @param cell the tile
+	 * @return the selection, or null if the tile has nothing. The same
+	 * 		instance is reused by every call, so it shouldn't be kept.
+	 */
+	public SelectableActionActor getSelection(Vector2 cell) {
+		int x = (int) cell.x;
+		int y = (int) cell.y;
+		if (!inBounds(x, y)) { return null; }
+		int i = x * height + y;
+		switch (state[i]) {
+			case MOVE:
+				selection.setMove(moveOrigin, moveTexture, cost[i]);
+				break;
+			case ATTACK:
+				selection.setAttack(attackOrigin, attackTexture, attack);
+				break;
+			default:
+				return null;
+		}
+		selection.setPosition(x * RPGStage.TILE_SIZE, y * RPGStage.TILE_SIZE);
+		return selection;
+	}
+	
+	@Override
+	public void draw(Batch batch, float alpha) {
+		for (int n = 0; n < activeCells.size; n++) {
+			int i = activeCells.get(n);
+			Texture t = state[i] == MOVE ? moveTexture : attackTexture;
+			batch.draw(t, (i / height) * RPGStage.TILE_SIZE, (i % height) * RPGStage.TILE_SIZE);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import com.mygdx.game.Strategy.MoveStep;
+
+/**
+ * The result of a range search kept as a predecessor tree, so the path to
+ * any tile in range can be read back in O(path length) without searching
+ * again. Built by Wayfinder.buildPathTree. Arrays cover the whole map and
+ * are reused between searches, so rebuilding doesn't allocate.
+ */
+public class PathTree {
+	public final int width, height;
+	
+	int[] cost;  // move points used to reach each tile
+	int[] diags;  // diagonal steps on the path to each tile, for breaking ties
+	int[] parent;  // previous tile on the path to each tile, -1 for the origin
+	int[] stamp;  // tiles are only reached if their stamp matches the current search
+	int currentStamp;
+	IntArray selectable;  // tiles that can be selected, in the order found
+	int reach;  // move points the search started with
+	int origin;  // index of the tile searched from
+	CharacterActor actor;  // the character the search was for
+	
+	/**
+	 * @param width width of the map in tiles
+	 * @param height height of the map in tiles
+	 */
+	public PathTree(int width, int height) {
+		this.width = width;
+		this.height = height;
+		cost = new int[width * height];
+		diags = new int[width * height];
+		parent = new int[width * height];
+		stamp = new int[width * height];
+		selectable = new IntArray();
+	}
+	
+	/**
+	 * Forgets the last search, making every tile unreached
+	 */
+	void reset() {
+		currentStamp++;
+		selectable.clear();
+		actor = null;
+		origin = -1;
+	}
+	
+	public int index(int x, int y) {
+		return x * height + y;
+	}
+	
+	public int getX(int index) {
+		return index / height;
+	}
+	
+	public int getY(int index) {
+		return index % height;
+	}
+	
+	/**
+	 * @return true if the search reached the tile at index
+	 */
+	public boolean isReached(int index) {
+		return index >= 0 && index < stamp.length && stamp[index] == currentStamp;
+	}
+	
+	public boolean isReached(Vector2 v) {
+		return v.x >= 0 && v.y >= 0 && v.x < width && v.y < height && isReached(index((int) v.x, (int) v.y));
+	}
+	
+	/**
+	 * @return the previous tile on the path to index, or -1 at the origin
+	 */
+	public int getParent(int index) {
+		return parent[index];
+	}
+	
+	public int getCost(int index) {
+		return cost[index];
+	}
+	
+	/**
+	 * @return moves left after reaching the tile at index
+	 */
+	public int getMovesLeft(int index) {
+		return reach - cost[index];
+	}
+	
+	public int getNumSelectable() {
+		return selectable.size;
+	}
+	
+	/**
+	 * @param i which selectable tile, from 0 to getNumSelectable
+	 * @return index of the tile
+	 */
+	public int getSelectable(int i) {
+		return selectable.get(i);
+	}
+	
+	public CharacterActor getActor() {
+		return actor;
+	}
+	
+	/**
+	 * Builds a strategy following the tree from the origin to a tile
+	 * @param target the tile to move to
+	 * @return the strategy, or null if the tile wasn't reached
+	 */
+	public Strategy getStrategy(Vector2 target) {
+		if (!isReached(target)) {
+			return null;
+		}
+		int steps = 0;
+		for (int i = index((int) target.x, (int) target.y); i != origin; i = parent[i]) {
+			steps++;
+		}
+		MoveStep[] path = new MoveStep[steps];
+		for (int i = index((int) target.x, (int) target.y); i != origin; i = parent[i]) {
+			path[--steps] = new MoveStep(getX(i), getY(i), cost[i] - cost[parent[i]]);
+		}
+		
+		Strategy plan = new Strategy();
+		for (MoveStep s : path) {
+			plan.addStep(s);
+		}
+		return plan;
+	}
+}
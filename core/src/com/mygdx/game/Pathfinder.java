@@ -0,0 +1,40 @@
+package com.mygdx.game;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * A search engine for the map. Everything that floods, paths or checks sight
+ * goes through the current one (see Pathfinders), so backends can be swapped
+ * at runtime and compared on the same maps. Backends must follow the same
+ * movement rules, but may pick different paths among those of equal cost.
+ */
+public interface Pathfinder {
+	/**
+	 * @return short name to pick this backend by
+	 */
+	public String getName();
+	
+	/**
+	 * Finds every tile an actor can select within reach, see Wayfinder.getAllSelectableTiles2
+	 * @return selectable tiles mapped to the moves left after reaching them
+	 */
+	public Map<Vector2, Integer> getAllSelectableTiles(CharacterActor actor, Vector2 origin,
+			int reach, MapInfo map, ActionProperties p);
+	
+	/**
+	 * Finds the cheapest path to any one of a set of tiles, see Wayfinder.getPathToTiles
+	 * @return the cost so far mapped to the tile reached for each step, starting
+	 * 		with 0 for origin, or null if no target can be reached
+	 */
+	public SortedMap<Integer, Vector2> getPathToTiles(Vector2 origin, Set<Vector2> targets,
+			MapInfo map, CharacterActor actor, ActionProperties p);
+	
+	/**
+	 * @return true if nothing blocks sight between two tiles
+	 */
+	public boolean traceLine(Vector2 a, Vector2 b, MapInfo map);
+}
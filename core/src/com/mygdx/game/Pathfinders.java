@@ -0,0 +1,45 @@
+package com.mygdx.game;
+
+/**
+ * Every pathfinder backend and which one is in use
+ */
+public class Pathfinders {
+	private static final Pathfinder[] all = { Wayfinder.PATHFINDER, new IndexedPathfinder() };
+	private static Pathfinder current = all[0];
+	
+	/**
+	 * @return the pathfinder in use
+	 */
+	public static Pathfinder get() {
+		return current;
+	}
+	
+	public static void set(Pathfinder p) {
+		current = p;
+	}
+	
+	/**
+	 * @param name name of a backend
+	 * @return the backend, or null if there isn't one by that name
+	 */
+	public static Pathfinder find(String name) {
+		for (Pathfinder p : all) {
+			if (p.getName().equals(name)) {
+				return p;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the backend after the one in use, wrapping around
+	 */
+	public static Pathfinder next() {
+		for (int i = 0; i < all.length; i++) {
+			if (all[i] == current) {
+				return all[(i + 1) % all.length];
+			}
+		}
+		return all[0];
+	}
+}
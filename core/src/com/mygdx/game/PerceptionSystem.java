@@ -0,0 +1,72 @@
+package com.mygdx.game;
+
+import java.util.Collection;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Lets every AI controlled character see its enemies. Watchers too far away
+ * to possibly see a target are skipped before any line of sight is worked out.
+ */
+public class PerceptionSystem extends EntitySystem {
+	private final RPGStage stage;
+	private ImmutableArray<Entity> watchers;
+	private final Vector2 from = new Vector2();  // reused, sight lookups don't keep it
+	
+	public PerceptionSystem(RPGStage stage) {
+		this.stage = stage;
+	}
+	
+	@Override
+	public void addedToEngine(Engine engine) {
+		watchers = engine.getEntitiesFor(
+				Family.all(BrainComponent.class, CellComponent.class, VisionComponent.class).get());
+	}
+	
+	/**
+	 * Alerts every watcher that can see the target to it
+	 */
+	public void spot(CharacterActor target) {
+		for (int i = 0; i < watchers.size(); i++) {
+			Entity e = watchers.get(i);
+			if (canSee(e, target)) {
+				Mappers.brain.get(e).brain.seeEnemy(target);
+			}
+		}
+	}
+	
+	/**
+	 * Alerts every watcher to each target it can see, in the targets' order
+	 */
+	public void spotAll(Collection<CharacterActor> targets) {
+		for (int i = 0; i < watchers.size(); i++) {
+			Entity e = watchers.get(i);
+			for (CharacterActor target : targets) {
+				if (canSee(e, target)) {
+					Mappers.brain.get(e).brain.seeEnemy(target);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the target's tile is in the watcher's sight
+	 */
+	public boolean canSee(Entity watcher, CharacterActor target) {
+		CellComponent cell = Mappers.cell.get(watcher);
+		int range = Mappers.vision.get(watcher).range;
+		int tx = (int) target.getX() / RPGStage.TILE_SIZE;
+		int ty = (int) target.getY() / RPGStage.TILE_SIZE;
+		// sight spreads a tile at a time, so never further than range on either axis
+		if (Math.abs(tx - cell.x) > range || Math.abs(ty - cell.y) > range) {
+			return false;
+		}
+		from.set(cell.x, cell.y);
+		return stage.darkness.getVisibleTiles(from, range).contains(target.getCell());
+	}
+}
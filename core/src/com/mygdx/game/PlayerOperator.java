@@ -22,8 +22,6 @@ public class PlayerOperator extends Operator {
 	
 	@Override
 	public void beginTurn() {
-		for (CharacterActor a : actors) {
-			a.refresh();
-		}
+		stage.getEngine().getSystem(RefreshSystem.class).refreshPlayers();
 	}
 }
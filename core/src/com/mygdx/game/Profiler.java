@@ -0,0 +1,248 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Lightweight frame profiler. Timers and counters are registered by name once
+ * (i.e. in a static field) and add up over a frame, and the last HISTORY frames
+ * of each are kept for averages, percentiles and CSV dumps. While disabled
+ * every call returns after checking a single flag.
+ */
+public class Profiler {
+	public static final int HISTORY = 240;  // frames kept for each timer and counter
+
+	private static boolean enabled = false;
+	private static long frame = 0;  // frames recorded since enabled
+	private static final Array<Timer> timers = new Array<>();
+	private static final Array<Counter> counters = new Array<>();
+	private static long[] sortScratch = new long[HISTORY];  // for percentiles
+
+	/**
+	 * Adds up nanoseconds spent between begin and end each frame. Nested
+	 * begins of the same timer (i.e. from recursion) are only counted once.
+	 */
+	public static class Timer {
+		public final String name;
+		private long start;
+		private int depth;
+		private long frameNanos;  // total so far this frame
+		private final long[] history = new long[HISTORY];
+
+		private Timer(String name) {
+			this.name = name;
+		}
+
+		public void begin() {
+			if (!enabled) { return; }
+			if (depth++ == 0) {
+				start = System.nanoTime();
+			}
+		}
+
+		public void end() {
+			if (!enabled || depth == 0) { return; }
+			if (--depth == 0) {
+				frameNanos += System.nanoTime() - start;
+			}
+		}
+
+		/**
+		 * @param framesAgo 0 for the last finished frame
+		 * @return nanoseconds recorded in that frame
+		 */
+		public long get(int framesAgo) {
+			return history[historyIndex(framesAgo)];
+		}
+
+		public long getAverage() {
+			return average(history);
+		}
+
+		public long getMax() {
+			return max(history);
+		}
+
+		/**
+		 * @param p fraction of frames at or under the result, i.e. 0.95f
+		 */
+		public long getPercentile(float p) {
+			return percentile(history, p);
+		}
+	}
+
+	/**
+	 * Counts things happening each frame, such as searches run or actors drawn
+	 */
+	public static class Counter {
+		public final String name;
+		private long frameCount;  // total so far this frame
+		private final long[] history = new long[HISTORY];
+
+		private Counter(String name) {
+			this.name = name;
+		}
+
+		public void inc() {
+			if (enabled) { frameCount++; }
+		}
+
+		public void add(int n) {
+			if (enabled) { frameCount += n; }
+		}
+
+		public long get(int framesAgo) {
+			return history[historyIndex(framesAgo)];
+		}
+
+		public long getAverage() {
+			return average(history);
+		}
+
+		public long getMax() {
+			return max(history);
+		}
+	}
+
+	/**
+	 * @param name name shown in the overlay and CSV
+	 * @return the timer with that name, created if needed
+	 */
+	public static Timer timer(String name) {
+		for (Timer t : timers) {
+			if (t.name.equals(name)) { return t; }
+		}
+		Timer t = new Timer(name);
+		timers.add(t);
+		return t;
+	}
+
+	/**
+	 * @param name name shown in the overlay and CSV
+	 * @return the counter with that name, created if needed
+	 */
+	public static Counter counter(String name) {
+		for (Counter c : counters) {
+			if (c.name.equals(name)) { return c; }
+		}
+		Counter c = new Counter(name);
+		counters.add(c);
+		return c;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns recording on or off. History is cleared when turned on, so it
+	 * only ever holds frames recorded in one go.
+	 */
+	public static void setEnabled(boolean on) {
+		if (on == enabled) { return; }
+		enabled = on;
+		frame = 0;
+		for (Timer t : timers) {
+			t.depth = 0;
+			t.frameNanos = 0;
+			Arrays.fill(t.history, 0);
+		}
+		for (Counter c : counters) {
+			c.frameCount = 0;
+			Arrays.fill(c.history, 0);
+		}
+	}
+
+	/**
+	 * Moves this frame's totals into history, should be called once at the end of each frame
+	 */
+	public static void endFrame() {
+		if (!enabled) { return; }
+		int i = (int) (frame % HISTORY);
+		for (Timer t : timers) {
+			t.history[i] = t.frameNanos;
+			t.frameNanos = 0;
+		}
+		for (Counter c : counters) {
+			c.history[i] = c.frameCount;
+			c.frameCount = 0;
+		}
+		frame++;
+	}
+
+	/**
+	 * @return number of frames currently held in history
+	 */
+	public static int getFramesRecorded() {
+		return (int) Math.min(frame, HISTORY);
+	}
+
+	public static Array<Timer> getTimers() {
+		return timers;
+	}
+
+	public static Array<Counter> getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Writes every recorded frame, oldest first, one row per frame with a
+	 * column for each timer (in milliseconds) and counter
+	 * @param file file to write, replaced if it exists
+	 */
+	public static void dumpCsv(FileHandle file) {
+		StringBuilder sb = new StringBuilder("frame");
+		for (Timer t : timers) {
+			sb.append(',').append(t.name).append(" ms");
+		}
+		for (Counter c : counters) {
+			sb.append(',').append(c.name);
+		}
+		sb.append('\n');
+
+		int n = getFramesRecorded();
+		for (int ago = n - 1; ago >= 0; ago--) {
+			sb.append(frame - 1 - ago);
+			for (Timer t : timers) {
+				sb.append(',').append(t.get(ago) / 1000000.0);
+			}
+			for (Counter c : counters) {
+				sb.append(',').append(c.get(ago));
+			}
+			sb.append('\n');
+		}
+		file.writeString(sb.toString(), false);
+	}
+
+	private static int historyIndex(int framesAgo) {
+		return (int) ((frame - 1 - framesAgo) % HISTORY + HISTORY) % HISTORY;
+	}
+
+	private static long average(long[] history) {
+		int n = getFramesRecorded();
+		if (n == 0) { return 0; }
+		long sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += history[i];
+		}
+		return sum / n;
+	}
+
+	private static long max(long[] history) {
+		long m = 0;
+		for (int i = 0, n = getFramesRecorded(); i < n; i++) {
+			m = Math.max(m, history[i]);
+		}
+		return m;
+	}
+
+	private static long percentile(long[] history, float p) {
+		int n = getFramesRecorded();
+		if (n == 0) { return 0; }
+		System.arraycopy(history, 0, sortScratch, 0, n);
+		Arrays.sort(sortScratch, 0, n);
+		return sortScratch[Math.min(n - 1, (int) (p * n))];
+	}
+}
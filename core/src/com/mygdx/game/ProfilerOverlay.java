@@ -0,0 +1,74 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Align;
+
+/**
+ * Text overlay listing every Profiler timer and counter. The text is only
+ * rebuilt a few times a second so reading it doesn't cost much more than
+ * drawing it.
+ */
+public class ProfilerOverlay extends Label {
+	public static final float REFRESH_TIME = 0.25f;  // seconds between text updates
+
+	private float sinceRefresh = REFRESH_TIME;
+	private final StringBuilder text = new StringBuilder();
+
+	public ProfilerOverlay(Skin skin) {
+		super("", skin);
+		setAlignment(Align.topLeft);
+		setTouchable(Touchable.disabled);
+	}
+
+	@Override
+	public void act(float delta) {
+		super.act(delta);
+		if (!isVisible()) { return; }
+		sinceRefresh += delta;
+		if (sinceRefresh >= REFRESH_TIME) {
+			sinceRefresh = 0;
+			refresh();
+		}
+	}
+
+	/**
+	 * Rebuilds the text from the profiler's current history
+	 */
+	private void refresh() {
+		text.setLength(0);
+		text.append("frames: ").append(Profiler.getFramesRecorded())
+			.append("   pathfinder: ").append(Pathfinders.get().getName())
+			.append("   avg / p95 / max ms\n");
+		for (Profiler.Timer t : Profiler.getTimers()) {
+			text.append(t.name).append(": ");
+			appendMillis(t.getAverage());
+			text.append(" / ");
+			appendMillis(t.getPercentile(0.95f));
+			text.append(" / ");
+			appendMillis(t.getMax());
+			text.append('\n');
+		}
+		for (Profiler.Counter c : Profiler.getCounters()) {
+			text.append(c.name).append(": ").append(c.getAverage())
+				.append(" (max ").append(c.getMax()).append(")\n");
+		}
+		setText(text);
+		setSize(getPrefWidth(), getPrefHeight());
+		if (getStage() != null) {
+			setPosition(10, getStage().getHeight() - 10 - getHeight());
+		}
+	}
+
+	/**
+	 * Appends nanoseconds as milliseconds with two decimals
+	 */
+	private void appendMillis(long nanos) {
+		long hundredths = nanos / 10000;
+		text.append(hundredths / 100).append('.');
+		long frac = hundredths % 100;
+		if (frac < 10) { text.append('0'); }
+		text.append(frac);
+	}
+}
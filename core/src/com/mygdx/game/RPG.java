@@ -7,12 +7,9 @@ import java.util.Set;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TiledMapRenderer;
-import com.badlogic.gdx.maps.tiled.TmxMapLoader;
-import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 
@@ -23,18 +20,30 @@ import com.badlogic.gdx.utils.viewport.ScreenViewport;
  */
 public class RPG implements Screen {
 	public static final boolean DEBUG = true;
+	public static final String MAP_PATH = "data/TiledMaps/samplemap.tmx";  // the map to play
+	public static final int SET_UP_STEPS = 4;  // calls to setUpStep before the game is ready
 	
 	private halfRPG parent;
 	private RPGStage mainStage;
 	private UiStage uiStage;
 	private OrthographicCamera cam;
 	
-	private TiledMapRenderer mapRenderer;
-	private TiledMap map;
+	private ChunkedMapRenderer mapRenderer;
+	private CompiledMap compiledMap;
+	private MapInfo mapInfo;  // built before any set up step, given to mainStage
+	private long seed;
+	private int setUpSteps;  // set up steps done so far
 	//private TiledMapStage mapStage;
 	
 	private InputMultiplexer multiplexer;
 	
+	// frame profiling, see Profiler
+	private static final Profiler.Timer frameTimer = Profiler.timer("frame");
+	private static final Profiler.Timer actTimer = Profiler.timer("stage act");
+	private static final Profiler.Timer mapTimer = Profiler.timer("map render");
+	private static final Profiler.Timer drawTimer = Profiler.timer("stage draw");
+	private static final Profiler.Timer uiTimer = Profiler.timer("ui");
+	
 	private static int ulockId;
 	private static Set<Integer> userInputLocks;
 	private static MapInfo currentMap;
@@ -48,40 +57,105 @@ public class RPG implements Screen {
 		RPG.currentMap = m;
 	}
 	
+	/**
+	 * Loads the map and sets up the game, all on this thread. 
+	 * LoadingScreen should normally be used instead.
+	 */
 	public RPG(halfRPG program) {
+		this(program, CompiledMap.load(MAP_PATH));
+	}
+	
+	/**
+	 * Sets up the game for an already compiled map, with a new random seed
+	 * @param program the parent program
+	 * @param compiledMap the map to play
+	 */
+	public RPG(halfRPG program, CompiledMap compiledMap) {
+		this(program, compiledMap, System.nanoTime());
+	}
+	
+	/**
+	 * Sets up the game for an already compiled map. Any textures already 
+	 * streamed into Assets are used rather than loaded again.
+	 * @param program the parent program
+	 * @param compiledMap the map to play
+	 * @param seed seed for everything random, the same seed and input always play out the same
+	 */
+	public RPG(halfRPG program, CompiledMap compiledMap, long seed) {
+		this(program, compiledMap, new MapInfo(compiledMap), seed);
+		while (!setUpStep()) {}
+	}
+	
+	/**
+	 * Starts setting up the game for a map whose info is already built, i.e. 
+	 * on LoadingScreen's worker. setUpStep must be called until it returns 
+	 * true before the game is used.
+	 * @param program the parent program
+	 * @param compiledMap the map to play
+	 * @param mapInfo info for compiledMap, which needs no GL so can be built on any thread
+	 * @param seed seed for everything random, the same seed and input always play out the same
+	 */
+	public RPG(halfRPG program, CompiledMap compiledMap, MapInfo mapInfo, long seed) {
 		parent = program;
+		this.compiledMap = compiledMap;
+		this.mapInfo = mapInfo;
+		this.seed = seed;
+		setUpSteps = 0;
 		state = GameState.SETUP;
-		
-		// set up shared camera
-		float w = Gdx.graphics.getWidth();
-		float h = Gdx.graphics.getHeight();
-				
-		OrthographicCamera cam = new OrthographicCamera();
-		cam.setToOrtho(false, w, h);
-		cam.update();
+	}
 	
-		// setup Tiled map
-		map = new TmxMapLoader().load("data/TiledMaps/samplemap.tmx");
-		mapRenderer = new OrthogonalTiledMapRenderer(map);
+	/**
+	 * Does the next part of setting up that needs the render thread (textures,
+	 * GL resources and actors), so LoadingScreen can spread them over frames
+	 * @return true once the game is ready
+	 */
+	public boolean setUpStep() {
+		switch (setUpSteps) {
+			case 0:
+				// set up shared camera
+				float w = Gdx.graphics.getWidth();
+				float h = Gdx.graphics.getHeight();
+				
+				cam = new OrthographicCamera();
+				cam.setToOrtho(false, w, h);
+				cam.update();
+				
+				// setup Tiled map, drawn a chunk at a time
+				mapRenderer = new ChunkedMapRenderer(compiledMap);
+				break;
+			case 1:
+				// create mainStage for sprites, giving it the map info and cam for logic
+				mainStage = new RPGStage(this, mapInfo, cam, seed); //Stage(new ScreenViewport(cam));
+				break;
+			case 2:
+				uiStage = new UiStage(this, cam);
+				break;
+			case 3:
+				// set up locks for user input (i.e. while animation playing)
+				ulockId = 0;
+				userInputLocks = new HashSet<>();
+				
+				MapLoader.loadEnemies(mainStage, compiledMap);
+				// setup input passing.
+				multiplexer = new InputMultiplexer();
+				multiplexer.addProcessor(uiStage);
+				multiplexer.addProcessor(mainStage);
+				//multiplexer.addProcessor(mapStage);
+				state = GameState.PLAYER_TURN;
+				GameLog.post(GameLog.Type.TURN_START, "player", null, -1, -1, mainStage.getTurn(), 0);
+				break;
+			default:
+				return true;
+		}
+		setUpSteps++;
+		return setUpSteps == SET_UP_STEPS;
+	}
 	
-		// create mainStage for sprites, giving it the tiled map and cam for logic
-		
-		
-		mainStage = new RPGStage(this, map, cam); //Stage(new ScreenViewport(cam));
-		uiStage = new UiStage(this, cam);
-		
-		// set up locks for user input (i.e. while animation playing)
-		ulockId = 0;
-		userInputLocks = new HashSet<>();
-		
-		MapLoader.loadEnemies(mainStage, map);
-		// setup input passing.
-		multiplexer = new InputMultiplexer();
-		multiplexer.addProcessor(uiStage);
-		multiplexer.addProcessor(mainStage);
-		//multiplexer.addProcessor(mapStage);
-		state = GameState.PLAYER_TURN;
-		
+	/**
+	 * @return how much of setting up is done, from 0 to 1
+	 */
+	public float getSetUpProgress() {
+		return setUpSteps / (float) SET_UP_STEPS;
 	}
 	
 	public static GameState getCurrentGameState() {
@@ -149,6 +223,75 @@ public class RPG implements Screen {
 		mainStage.handleUiSelection(a);
 	}
 	
+	/**
+	 * Switches to the next playback speed for strategies, see RPGStage.PlaybackSpeed
+	 * @return the new speed
+	 */
+	public RPGStage.PlaybackSpeed cyclePlaybackSpeed() {
+		RPGStage.PlaybackSpeed next = mainStage.getPlaybackSpeed().next();
+		mainStage.setPlaybackSpeed(next);
+		return next;
+	}
+	
+	/**
+	 * Switches to the next pathfinder backend, see Pathfinders.
+	 * Only works while waiting on the player.
+	 * @return the backend in use afterwards
+	 */
+	public Pathfinder cyclePathfinder() {
+		if (mainStage.canSave()) {
+			mainStage.setPathfinder(Pathfinders.next().getName());
+			Gdx.app.log("Pathfinder", Pathfinders.get().getName());
+		}
+		return Pathfinders.get();
+	}
+	
+	/**
+	 * Snapshots the battle and writes it to the quick save in the background.
+	 * Only works while waiting on the player.
+	 * @return true if a save was started
+	 */
+	public boolean quickSave() {
+		if (!mainStage.canSave()) { return false; }
+		long start = System.nanoTime();
+		SaveGame.capture(mainStage).writeAsync(Gdx.files.local(SaveGame.QUICK_SAVE));
+		Gdx.app.log("SaveGame", "captured in " + (System.nanoTime() - start) / 1000 + "us");
+		return true;
+	}
+	
+	/**
+	 * Replaces the battle with the quick save. Only works while waiting on the player.
+	 * @return true if a save was loaded
+	 */
+	public boolean quickLoad() {
+		if (!mainStage.canSave()) { return false; }
+		long start = System.nanoTime();
+		SaveGame save = SaveGame.load(Gdx.files.local(SaveGame.QUICK_SAVE));
+		if (save == null) { return false; }
+		if (!save.mapPath.equals(MAP_PATH)) {
+			Gdx.app.error("SaveGame", "quick save is for " + save.mapPath);
+			return false;
+		}
+		save.restore(mainStage);
+		Gdx.app.log("SaveGame", "loaded in " + (System.nanoTime() - start) / 1000 + "us");
+		return true;
+	}
+	
+	/**
+	 * Records this battle's inputs and steps to a journal, see Journal
+	 * @param file file to write, replaced if it exists
+	 */
+	public void startRecording(FileHandle file) {
+		mainStage.startRecording(file);
+	}
+	
+	/**
+	 * Plays back a journal with animation off, see Journal.Replayer
+	 */
+	public void startReplay(Journal.Replayer replay) {
+		mainStage.startReplay(replay);
+	}
+	
 	@Override
 	public void show() {
 		Gdx.input.setInputProcessor(multiplexer);
@@ -156,22 +299,35 @@ public class RPG implements Screen {
 
 	@Override
 	public void render(float delta) {
+		frameTimer.begin();
 		// clear screen
 		Gdx.gl.glClearColor(0, 0, 0, 1);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 		
 	// update stage to fit any camera changes
+		actTimer.begin();
 		mainStage.act(delta);
+		actTimer.end();
 		//mapStage.act();
+		mapTimer.begin();
 		mainStage.getCamera().update();  // share camera
 		mapRenderer.setView((OrthographicCamera) mainStage.getCamera());
 		mapRenderer.render();
+		mapTimer.end();
 		
+		uiTimer.begin();
 		uiStage.act(Gdx.graphics.getDeltaTime());
+		uiTimer.end();
 		
+		drawTimer.begin();
 		mainStage.draw();
+		drawTimer.end();
+		uiTimer.begin();
 		uiStage.draw();
+		uiTimer.end();
 		//mapStage.draw();
+		frameTimer.end();
+		Profiler.endFrame();
 	}
 	
 	@Override
@@ -200,7 +356,10 @@ public class RPG implements Screen {
 	@Override
 	public void dispose() {
 		mainStage.dispose();
+		uiStage.dispose();
 		//mapStage.dispose();
+		mapRenderer.dispose();
+		compiledMap.releaseTextures();
 	}
 	
 }
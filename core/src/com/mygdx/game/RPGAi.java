@@ -1,5 +1,7 @@
 package com.mygdx.game;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -14,11 +16,44 @@ public abstract class RPGAi {
 		UNALERTED, PATROLLING, ALERTED;
 	}
 	
+	public static final long NO_DEADLINE = Long.MAX_VALUE;  // for plan, to think for as long as it takes
+	
+	protected GameRandom random = new GameRandom(System.nanoTime());  // replaced by the stage's split when added
+	
+	/**
+	 * Sets the generator used for all of this ai's choices
+	 */
+	public void setRandom(GameRandom random) {
+		this.random = random;
+	}
+	
+	public GameRandom getRandom() {
+		return random;
+	}
+	
 	
 	public abstract boolean isAlerted();
 	
 	public abstract Strategy getStrategy();
 	
+	/**
+	 * Works on this turn's strategy until it's planned or time runs out, carrying
+	 * on from where the last call stopped. Ais that can't split up their planning
+	 * plan all at once.
+	 * @param deadline System.nanoTime to stop by, or NO_DEADLINE to finish now
+	 * @return the strategy, or null if still thinking
+	 */
+	public Strategy plan(long deadline) {
+		return getStrategy();
+	}
+	
+	/**
+	 * @return true if a deadline given to plan has passed
+	 */
+	public static boolean isPast(long deadline) {
+		return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+	}
+	
 	public Strategy getUnalertedStrategy() { return null; }
 	
 	public Strategy getPatrolStrategy() { return null; }
@@ -33,6 +68,16 @@ public abstract class RPGAi {
 	
 	public abstract State setState(State s);
 	
+	/**
+	 * @return characters this ai is alerted to, most important first
+	 */
+	public Collection<CharacterActor> getAlertedTo() { return Collections.emptyList(); }
+	
+	/**
+	 * Replaces what this ai is alerted to, i.e. when loading a save
+	 */
+	public void setAlertedTo(Collection<CharacterActor> alerts) { }
+	
 	// update methods (on turn)
 	// return if changed behavior after hit
 	public boolean seeEnemy(CharacterActor a) { return false; } 
@@ -1,6 +1,7 @@
 package com.mygdx.game;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -8,7 +9,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -16,10 +16,13 @@ import java.util.TreeSet;
 import com.badlogic.gdx.math.Vector2;
 import com.mygdx.game.SelectableActionActor.ActionType;
 import com.mygdx.game.Strategy.ActionStep;
+import com.mygdx.game.Strategy.MoveStep;
 import com.mygdx.game.Strategy.Step;
 import com.mygdx.game.Strategy.StepType;
 
 public class RPGAiBasic extends RPGAi {
+	static final int DANGER_COST = 2;  // extra moves worth making to attack from where one less player could hit back
+	
 	State currentState;
 	EnemyActor body;
 	Deque<CharacterActor> alertedTo;
@@ -37,7 +40,7 @@ public class RPGAiBasic extends RPGAi {
 		if (!alertedTo.contains(a)) {
 			alertedTo.add(a);
 			if (currentState != State.ALERTED) {
-				System.out.println(body+ " spotted " + a);
+				GameLog.post(GameLog.Type.SPOTTED, body, a, 0, 0);
 				currentState = State.ALERTED;
 				return true;
 			}
@@ -55,6 +58,17 @@ public class RPGAiBasic extends RPGAi {
 		return false;
 	}
 	
+	@Override
+	public Collection<CharacterActor> getAlertedTo() {
+		return alertedTo;
+	}
+	
+	@Override
+	public void setAlertedTo(Collection<CharacterActor> alerts) {
+		alertedTo.clear();
+		alertedTo.addAll(alerts);
+	}
+	
 	public boolean isAlerted() {
 		return !alertedTo.isEmpty();
 	}
@@ -67,7 +81,6 @@ public class RPGAiBasic extends RPGAi {
 	
 	@Override
 	public boolean enemyDeath(CharacterActor enemy) {
-		System.out.println("enemy killed");
 		if (alertedTo.contains(enemy)) {
 			alertedTo.remove(enemy);
 			return true;
@@ -97,38 +110,56 @@ public class RPGAiBasic extends RPGAi {
 	
 	@Override
 	public Strategy getUnalertedStrategy() {
+		List<Vector2> tiles = getWanderTiles();
+		if (tiles == null) {
+			return new Strategy();
+		}
 		
-		Random r = new Random();
-		int moveSpaces = r.nextInt(body.getSpeedRemaining()+1) / 2;
+		while (tiles.size() > 0) {
+			Strategy s = getWanderStrategy(tiles.remove(random.nextInt(tiles.size())));
+			if (s != null) {
+				return s;
+			}
+		}
+		return new Strategy();
+	}
+	
+	/**
+	 * Picks how far to wander this turn
+	 * @return tiles that far away to try wandering to, or null to stay put
+	 */
+	protected List<Vector2> getWanderTiles() {
+		int moveSpaces = random.nextInt(body.getSpeedRemaining()+1) / 2;
 		
 		
 		if (moveSpaces == 0) {
-			return new Strategy();
+			return null;
 		}
 		
-		List<Vector2> tiles = new ArrayList<>(Wayfinder.getAdjacentTiles(body.getCell(), moveSpaces));
-		
-		while (tiles.size() > 0) {
-			Vector2 v = tiles.remove(r.nextInt(tiles.size()));
-			if (Wayfinder.canMoveTo(v, ActionProperties.getDefaultMoveProperty(false))) {
-				Strategy s = Wayfinder.getStrategyToTile(body.getCell(), v, body, ActionProperties.getDefaultMoveProperty(false));
-				if (s != null && s.getTotalMoveCost() <= body.getSpeedRemaining()) {
-					return s;
-				}
+		return new ArrayList<>(Wayfinder.getAdjacentTiles(body.getCell(), moveSpaces));
+	}
+	
+	/**
+	 * @param v tile to wander to
+	 * @return strategy to get there this turn, or null if it can't
+	 */
+	protected Strategy getWanderStrategy(Vector2 v) {
+		if (Wayfinder.canMoveTo(v, ActionProperties.getDefaultMoveProperty(false))) {
+			Strategy s = Wayfinder.getStrategyToTile(body.getCell(), v, body, ActionProperties.getDefaultMoveProperty(false));
+			if (s != null && s.getTotalMoveCost() <= body.getSpeedRemaining()) {
+				return s;
 			}
 		}
-		return new Strategy();
+		return null;
 	}
 	
 	public Strategy chooseAttackStrategy(SortedSet<Strategy> strategies) {
 		if (strategies.isEmpty()) {
-			System.out.println("cant find attack");
+			GameLog.post(GameLog.Type.PLAN, body, null, 0, 0);  // no way to attack
 			return getUnalertedStrategy();
 		} else {
-			for (Strategy s : strategies) {
-				System.out.println(s) ;
-			}
 			Strategy choice = strategies.first();
+			GameLog.post(GameLog.Type.PLAN, body, null, strategies.size(), choice.getTotalMoveCost());
 			
 			choice.cullToSpeed(body.getSpeedRemaining());
 			Step finalStep = choice.getLastStep();
@@ -153,30 +184,10 @@ public class RPGAiBasic extends RPGAi {
 		int index = 0;
 		
 		for (CharacterActor target : alertedTo) {
-			Strategy possibleStrategy;
-			if (Wayfinder.canReach(body.getCell(), target.getCell(), body.getBasicAttack().range,
-					ActionProperties.getDefaultAttackProperties(false))) {
-				possibleStrategy = new Strategy();
-			} else {
-				//System.out.println("\n\n");
-				//System.out.println(Wayfinder.getAdjacentTiles(target.getCell(), body.getBasicAttack().range, ActionProperties.getDefaultAttackProperties(false)));
-				possibleStrategy = Wayfinder.getStrategyToTiles(
-						body.getCell(), Wayfinder.getAdjacentTiles(target.getCell(), body.getBasicAttack().range, ActionProperties.getDefaultMoveProperty(false)),
-						body, ActionProperties.getDefaultMoveProperty(false));
-			}
-			
-			
+			Strategy possibleStrategy = getAttackStrategy(target, index);
 			if (possibleStrategy == null) {
 				continue;
 			}
-			
-			possibleStrategy.addStep(new Strategy.ActionStep(target, body.getBasicAttack()));
-			
-			possibleStrategy.addCost(index);
-			
-			if (possibleStrategy.getTotalMoveCost() > body.getSpeedRemaining()) {
-				possibleStrategy.addCost(possibleStrategy.getTotalMoveCost() * 100);
-			}
 			targets.add(possibleStrategy);
 			index++;
 			
@@ -185,6 +196,63 @@ public class RPGAiBasic extends RPGAi {
 		return targets;
 		
 	}
+	
+	/**
+	 * Plans an attack on one target, costed so earlier targets (and ones
+	 * that can be reached this turn) are preferred
+	 * @param target character to attack
+	 * @param index how many attacks were already found, earlier targets coming first
+	 * @return strategy ending in the attack, or null if the target can't be reached
+	 */
+	protected Strategy getAttackStrategy(CharacterActor target, int index) {
+		Strategy possibleStrategy;
+		if (Wayfinder.canReach(body.getCell(), target.getCell(), body.getBasicAttack().range,
+				ActionProperties.getDefaultAttackProperties(false))) {
+			possibleStrategy = new Strategy();
+		} else {
+			//System.out.println("\n\n");
+			//System.out.println(Wayfinder.getAdjacentTiles(target.getCell(), body.getBasicAttack().range, ActionProperties.getDefaultAttackProperties(false)));
+			possibleStrategy = Wayfinder.getStrategyToTiles(
+					body.getCell(), Wayfinder.getAdjacentTiles(target.getCell(), body.getBasicAttack().range, ActionProperties.getDefaultMoveProperty(false)),
+					body, ActionProperties.getDefaultMoveProperty(false));
+		}
+		
+		
+		if (possibleStrategy == null) {
+			return null;
+		}
+		
+		// prefer attacking from where fewer players could hit back than allies could help
+		InfluenceSystem influence = getInfluence();
+		if (influence != null) {
+			Step last = possibleStrategy.getLastStep();
+			Vector2 from = last instanceof MoveStep ? ((MoveStep) last).stepLocation : body.getCell();
+			int x = (int) from.x;
+			int y = (int) from.y;
+			int danger = influence.getThreat(InfluenceSystem.PLAYERS, x, y)
+					- Math.max(0, influence.getSupport(InfluenceSystem.ENEMIES, x, y) - 1);
+			if (danger > 0) {
+				possibleStrategy.addCost(danger * DANGER_COST);
+			}
+		}
+		
+		possibleStrategy.addStep(new Strategy.ActionStep(target, body.getBasicAttack()));
+		
+		possibleStrategy.addCost(index);
+		
+		if (possibleStrategy.getTotalMoveCost() > body.getSpeedRemaining()) {
+			possibleStrategy.addCost(possibleStrategy.getTotalMoveCost() * 100);
+		}
+		return possibleStrategy;
+	}
+	
+	/**
+	 * @return the influence maps of the battle the body is in, or null if it isn't in one
+	 */
+	protected InfluenceSystem getInfluence() {
+		if (!(body.getStage() instanceof RPGStage)) {
+			return null;
+		}
+		return ((RPGStage) body.getStage()).getEngine().getSystem(InfluenceSystem.class);
+	}
 }
-
-
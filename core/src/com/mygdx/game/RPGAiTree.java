@@ -0,0 +1,74 @@
+package com.mygdx.game;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.badlogic.gdx.ai.btree.BehaviorTree;
+import com.badlogic.gdx.ai.btree.Task.Status;
+import com.badlogic.gdx.ai.btree.utils.BehaviorTreeLibraryManager;
+
+/**
+ * Ai that plans by running a gdx-ai behaviour tree loaded from a data file
+ * (see data/AiData), the tree's leaves being the tasks in AiTasks. It keeps
+ * track of what it's alerted to the same way RPGAiBasic does.
+ *
+ * Leaves that search the map make one search each time the tree is stepped,
+ * so plan can stop between them once its deadline passes and carry on next
+ * frame. How a plan is split up never changes what's planned.
+ */
+public class RPGAiTree extends RPGAiBasic {
+	public static final String DEFAULT_TREE = "data/AiData/enemy.tree";
+
+	private static final Profiler.Counter stepCounter = Profiler.counter("ai tree steps");
+
+	private final BehaviorTree<RPGAiTree> tree;
+	private boolean thinking;  // part way through a plan
+
+	// filled in by the tree's leaves as it runs
+	final SortedSet<Strategy> attacks = new TreeSet<>();  // attacks found, best first
+	Strategy choice;  // what to do this turn, null until chosen
+
+	/**
+	 * @param body enemy this ai controls
+	 * @param treePath internal path of the tree's file, parsed once and shared by every ai using it
+	 */
+	public RPGAiTree(EnemyActor body, String treePath) {
+		super(body);
+		tree = BehaviorTreeLibraryManager.getInstance().createBehaviorTree(treePath, this);
+	}
+
+	/**
+	 * @return the enemy this ai controls, for the tree's leaves
+	 */
+	EnemyActor getBody() {
+		return body;
+	}
+
+	@Override
+	public Strategy getStrategy() {
+		return plan(NO_DEADLINE);
+	}
+
+	@Override
+	public Strategy plan(long deadline) {
+		if (!thinking) {
+			tree.reset();
+			attacks.clear();
+			choice = null;
+			thinking = true;
+		}
+		do {
+			stepCounter.inc();
+			tree.step();
+		} while (tree.getStatus() == Status.RUNNING && !isPast(deadline));
+		if (tree.getStatus() == Status.RUNNING) {
+			return null;
+		}
+
+		thinking = false;
+		Strategy s = choice != null ? choice : new Strategy();  // a tree that fails stays put
+		choice = null;
+		attacks.clear();
+		return s;
+	}
+}
@@ -1,6 +1,8 @@
 package com.mygdx.game;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -9,8 +11,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
@@ -23,6 +27,7 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.maps.MapProperties;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.scenes.scene2d.Actor;
@@ -31,12 +36,14 @@ import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.scenes.scene2d.actions.DelayAction;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Timer;
 import com.badlogic.gdx.utils.Timer.Task;
 import com.mygdx.game.ActionProperties.CanMoveThrough;
 import com.mygdx.game.ActionProperties.CanSelect;
 import com.mygdx.game.ActionProperties.EffectedByDarkness;
 import com.mygdx.game.ActionProperties.EffectedByTerrain;
+import com.mygdx.game.ActionProperties.RequireLineOfSight;
 import com.mygdx.game.RPG.UiAction;
 import com.mygdx.game.Strategy.ActionStep;
 import com.mygdx.game.Strategy.MoveStep;
@@ -55,35 +62,115 @@ public class RPGStage extends Stage {
 	private int interactableAnimationLock;
 		
 	public static final int TILE_SIZE = 64;  // tile size in pixel, must match Tiled info
-	public static final float ANIMATION_DELAY = .5f;
+	public static final float ANIMATION_DELAY = .5f;  // seconds between steps at normal speed
+	public static final long AI_BUDGET = 4000000L;  // nanoseconds per frame enemies may spend planning
+	
+	/**
+	 * How fast strategies play out. INSTANT executes every step of a strategy at once.
+	 */
+	public enum PlaybackSpeed {
+		NORMAL("1x", 1), DOUBLE("2x", 2), QUAD("4x", 4), INSTANT("instant", 0);
+		
+		public final String label;
+		public final float multiplier;  // how many times faster than ANIMATION_DELAY, 0 for instant
+		
+		PlaybackSpeed(String label, float multiplier) {
+			this.label = label;
+			this.multiplier = multiplier;
+		}
+		
+		/**
+		 * @return the next speed, wrapping back to NORMAL after INSTANT
+		 */
+		public PlaybackSpeed next() {
+			return values()[(ordinal() + 1) % values().length];
+		}
+	}
+	private static final Profiler.Timer aiTimer = Profiler.timer("ai planning");
 	
 	//List<PlayerActor> playerActors;  // all actors the player controls
 	public boolean playerFocus;  // has a playable actor been focused on
 	public PlayerActor focusedPlayer;  // which playable actor is focused on (only valid if playerFocus is true)
 	
-	boolean executingAction;
-	float actionDeltaTime = 0f;
-	
 	EffectsManager effects;
 	DarknessManager darkness;
 	PlayerOperator playerOp;
 	EnemyOperator enemyOp;
 	
-	Strategy.Origin consideredStrategy;
+	StrategyScheduler scheduler;  // plays strategies, several at once when they can't interfere
+	
+	// back to waiting on the player once their strategy is done
+	private final StrategyScheduler.Listener playerFinished = new StrategyScheduler.Listener() {
+		@Override
+		public void strategyFinished(StrategyScheduler.Track track) {
+			if (RPG.getCurrentGameState() == GameState.PLAYER_ANIMATION && !scheduler.isBusy()) {
+				RPG.setCurrentGameState(GameState.PLAYER_TURN);
+				RPG.unblockUserInput(interactableAnimationLock);
+			}
+		}
+	};
+	
+	// starts whichever enemies can go now that one is done
+	private final StrategyScheduler.Listener enemyFinished = new StrategyScheduler.Listener() {
+		@Override
+		public void strategyFinished(StrategyScheduler.Track track) {
+			if (RPG.getCurrentGameState() == GameState.ENEMY_ANIMATION) {
+				enemyTurn();
+			}
+		}
+	};
+	
+	private int turn = 1;  // number of the current round, counting from 1
+	
+	private final long seed;  // seed the battle started from
+	private GameRandom random;  // splits off a generator for each character added
+	private int nextId = 0;  // id for the next character added
+	
+	private PlaybackSpeed playbackSpeed = PlaybackSpeed.NORMAL;
+	private long thinkUntil;  // System.nanoTime this frame's enemy planning should stop by
+	private boolean skipping;  // in skipAnimation, where planning isn't spread over frames
+	private Journal.Recorder recorder;  // null unless recording
+	private Journal.Replayer replayer;  // null unless replaying
+	
+	private HitIndex hitIndex;  // characters by tile, for answering hit without walking every actor
+	private final Array<CharacterActor> areaTargets = new Array<>();  // reused by executeAreaAttack
+	private Engine engine;  // holds every character's entity while it's on the stage
+	private CharacterRenderSystem characterRenderer;
 	
 	
 	/**
 	 * Sets up display and logic for the map, characters, user input handling etc.
 	 * TODO: Replace moveableTiles with some sort of batching
 	 *
-	 * @param map a TiledMap representing the map to be loaded
+	 * @param mapInfo info for the map to be loaded
 	 * @param cam the camera associated with other stages for panning, etc.
+	 * @param seed seed for everything random in the battle
 	 */
-	public RPGStage(RPG parent, TiledMap map, OrthographicCamera cam) {
+	public RPGStage(RPG parent, MapInfo mapInfo, OrthographicCamera cam, long seed) {
 		getViewport().setCamera(cam);
 		this.parent = parent;
 		this.cam = cam;
-		MapInfo mapInfo = new MapInfo(map);
+		this.seed = seed;
+		this.random = new GameRandom(seed);
+		hitIndex = new HitIndex(TILE_SIZE);
+		
+		engine = new Engine();
+		characterRenderer = new CharacterRenderSystem(this);
+		engine.addSystem(characterRenderer);
+		engine.addSystem(new PerceptionSystem(this));
+		engine.addSystem(new RefreshSystem());
+		engine.addSystem(new InfluenceSystem());
+		engine.addSystem(new AreaSystem(this));
+		
+		// every character is drawn here, under everything else on the stage
+		Actor characterLayer = new Actor() {
+			@Override
+			public void draw(Batch batch, float alpha) {
+				characterRenderer.draw(batch);
+			}
+		};
+		characterLayer.setTouchable(Touchable.disabled);
+		addActor(characterLayer);
 		
 		RPG.setCurrentMapInfo(mapInfo);
 		
@@ -121,9 +208,11 @@ public class RPGStage extends Stage {
 		
 		//mapInfo.addCharacter(moblin);
 		//playerActors.add(moblin);
+		register(moblin);
 		playerOp.addActor(moblin);
 		addActor(moblin);
 		
+		register(moblin2);
 		playerOp.addActor(moblin2);
 		//mapInfo.addCharacter(moblin2);
 		//playerActors.add(moblin2);
@@ -138,11 +227,44 @@ public class RPGStage extends Stage {
 		interactableTurnLock = -1;
 		interactableAnimationLock = -1;
 		
-		executingAction = false;
+		scheduler = new StrategyScheduler(this);
 		
 	}
 	
 	public void addCharacter(CharacterActor actor, boolean player, int xCell, int yCell) {
+		register(actor);
+		actor.setPosition(xCell * TILE_SIZE, yCell * TILE_SIZE);
+		if (player) {
+			playerOp.addActor(actor);
+			actor.setTouchable(Touchable.enabled);
+		} else {
+			enemyOp.addActor(actor);
+			actor.setTouchable(Touchable.disabled);
+		}
+		addActor(actor);
+		if (darkness != null) {
+			darkness.clearDarkness(actor);
+		}
+	}
+	
+	/**
+	 * Gives a new character its id and, for enemies, a random generator split off the stage's.
+	 * Characters must be registered in the same order every time for a seed to replay.
+	 */
+	private void register(CharacterActor actor) {
+		actor.setId(nextId++);
+		if (actor instanceof EnemyActor) {
+			((EnemyActor) actor).brain.setRandom(random.split());
+		}
+	}
+	
+	/**
+	 * Adds a character that already has an id (and random generator, if an enemy),
+	 * i.e. one loaded from a save
+	 */
+	void restoreCharacter(CharacterActor actor, boolean player, int xCell, int yCell, int id) {
+		actor.setId(id);
+		nextId = Math.max(nextId, id + 1);
 		actor.setPosition(xCell * TILE_SIZE, yCell * TILE_SIZE);
 		if (player) {
 			playerOp.addActor(actor);
@@ -152,6 +274,202 @@ public class RPGStage extends Stage {
 			actor.setTouchable(Touchable.disabled);
 		}
 		addActor(actor);
+		darkness.clearDarkness(actor);
+	}
+	
+	/**
+	 * Takes every character off the map and stage without disposing them,
+	 * so they can be replaced, i.e. when loading a save
+	 * @return the characters taken, which should be disposed once replaced
+	 */
+	List<CharacterActor> takeCharacters() {
+		List<CharacterActor> taken = new ArrayList<>(playerOp.getActors());
+		taken.addAll(enemyOp.getActors());
+		for (CharacterActor c : taken) {
+			RPG.getCurrentMapInfo().removeCharacter(c);
+			darkness.forgetObserver(c);
+			c.remove();
+			c.clear();
+			playerOp.removeActor(c);
+			enemyOp.removeActor(c);
+		}
+		playerFocus = false;
+		focusedPlayer = null;
+		effects.clearEffects();
+		removeUiActions();
+		return taken;
+	}
+	
+	/**
+	 * Sets the round and random state, i.e. when loading a save. Recording
+	 * stops, since a journal can't jump to a loaded state.
+	 */
+	void restoreState(int turn, GameRandom random, int nextId) {
+		this.turn = turn;
+		this.random = random;
+		this.nextId = Math.max(this.nextId, nextId);
+		stopRecording();
+	}
+	
+	GameRandom getRandom() {
+		return random;
+	}
+	
+	int getNextId() {
+		return nextId;
+	}
+	
+	/**
+	 * @return true if the battle is in a state that can be saved or loaded over:
+	 * 		waiting on the player, not replaying
+	 */
+	public boolean canSave() {
+		return replayer == null && !scheduler.isBusy() && RPG.getCurrentGameState() == GameState.PLAYER_TURN;
+	}
+	
+	/**
+	 * @param id id of a character on the map
+	 * @return the character, or null if it isn't on the map
+	 */
+	public CharacterActor getCharacter(int id) {
+		for (CharacterActor a : playerOp.getActors()) {
+			if (a.getId() == id) { return a; }
+		}
+		for (CharacterActor a : enemyOp.getActors()) {
+			if (a.getId() == id) { return a; }
+		}
+		return null;
+	}
+	
+	/**
+	 * Hashes everything that decides how the rest of the battle plays out:
+	 * the round and every character's position, health, moves and actions left,
+	 * plus each enemy's alert state and random generator.
+	 * @return the hash, the same for the same state on any run
+	 */
+	public long getStateHash() {
+		List<CharacterActor> all = new ArrayList<>(playerOp.getActors());
+		all.addAll(enemyOp.getActors());
+		Collections.sort(all, new Comparator<CharacterActor>() {
+			@Override
+			public int compare(CharacterActor a, CharacterActor b) {
+				return Integer.compare(a.getId(), b.getId());
+			}
+		});
+		
+		long h = hash(0xcbf29ce484222325L, turn);
+		for (CharacterActor a : all) {
+			h = hash(h, a.getId());
+			h = hash(h, (int) a.getX());
+			h = hash(h, (int) a.getY());
+			h = hash(h, a.getHealth());
+			h = hash(h, a.getSpeedRemaining());
+			h = hash(h, a.getActionsLeft());
+			if (a instanceof EnemyActor) {
+				RPGAi brain = ((EnemyActor) a).brain;
+				h = hash(h, brain.getState().ordinal());
+				h = hash(h, brain.getRandom().getState());
+			}
+		}
+		return h;
+	}
+	
+	private static long hash(long h, long v) {
+		return (h ^ v) * 0x100000001b3L;
+	}
+	
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * @param speed how fast strategies play from now on, including the one playing
+	 */
+	public void setPlaybackSpeed(PlaybackSpeed speed) {
+		playbackSpeed = speed;
+		scheduler.setImmediate(speed == PlaybackSpeed.INSTANT);
+		if (speed == PlaybackSpeed.INSTANT && enemyOp.isThinking()) {
+			enemyTurn();  // no frames left to spread its planning over
+		}
+		scheduler.settle();
+	}
+	
+	public PlaybackSpeed getPlaybackSpeed() {
+		return playbackSpeed;
+	}
+	
+	/**
+	 * Executes every remaining step of the strategies playing now at once,
+	 * then carries on as if they had played out
+	 * @return true if a strategy was playing
+	 */
+	public boolean skipAnimation() {
+		if (!scheduler.isBusy()) { return false; }
+		skipping = true;
+		try {
+			if (enemyOp.isThinking()) {
+				enemyTurn();
+			}
+			scheduler.skip();
+		} finally {
+			skipping = false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Starts writing every input and step from here on to a journal
+	 * @param file file to write, replaced if it exists
+	 */
+	public void startRecording(FileHandle file) {
+		stopRecording();
+		recorder = new Journal.Recorder(file, seed, RPG.MAP_PATH, Pathfinders.get().getName());
+	}
+	
+	public void stopRecording() {
+		if (recorder != null) {
+			recorder.close();
+			recorder = null;
+		}
+	}
+	
+	/**
+	 * Plays back a journal recorded from this seed, as fast as possible.
+	 * The player's input is ignored while it plays.
+	 */
+	public void startReplay(Journal.Replayer replay) {
+		replayer = replay;
+		setPlaybackSpeed(PlaybackSpeed.INSTANT);
+		if (!setPathfinder(replay.getPathfinder())) {
+			Gdx.app.error("Replay", "no pathfinder called " + replay.getPathfinder());
+		}
+	}
+	
+	/**
+	 * Switches the pathfinder everything on the map searches with, recording
+	 * the switch if recording. Should only be done while waiting on the player.
+	 * @param name name of the backend, see Pathfinders
+	 * @return false if there's no backend by that name
+	 */
+	public boolean setPathfinder(String name) {
+		Pathfinder p = Pathfinders.find(name);
+		if (p == null) { return false; }
+		if (p != Pathfinders.get() && recorder != null) {
+			recorder.pathfinder(name);
+		}
+		Pathfinders.set(p);
+		return true;
+	}
+	
+	public Journal.Replayer getReplayer() {
+		return replayer;
+	}
+	
+	/**
+	 * @return number of the current round, counting from 1
+	 */
+	public int getTurn() {
+		return turn;
 	}
 	
 	/**
@@ -166,26 +484,81 @@ public class RPGStage extends Stage {
 		parent.passToUi(UiAction.TOGGLE_VISIBILITY, "enemyTurn");
 		RPG.setCurrentGameState(GameState.ENEMY_TURN);
 		interactableTurnLock = RPG.blockUserInput();
+		if (recorder != null) {
+			recorder.endTurn();
+		}
+		GameLog.post(GameLog.Type.TURN_END, "player", null, -1, -1, turn, 0);
+		GameLog.post(GameLog.Type.TURN_START, "enemy", null, -1, -1, turn, 0);
 		
 		enemyOp.beginTurn();
 		enemyTurn();
-		
+		scheduler.settle();
 	}
 	
+	/**
+	 * Plans and starts the waiting enemies, in turn order, for as long as each
+	 * can play alongside what's already playing. Enemies that are alerted or
+	 * could be seen by the player play alone, so the player can follow them.
+	 * Ends the enemies' turn once every enemy has gone and nothing is playing.
+	 * Enemies are started in a loop, never by recursing back in here, so a
+	 * turn can hold any number of them.
+	 *
+	 * Planning stops once this frame's AI_BUDGET is spent, holding the scheduler
+	 * until the enemy planning is done; act carries on with it next frame.
+	 */
 	public void enemyTurn() {
-
-		Strategy.Origin enemyStrat = enemyOp.getStrategy();
-		//System.out.println(enemyOp.getActors());
-		//System.out.println(enemyStrat.strat);
-		
-		if (enemyStrat != null) {
-			executeStrategy(enemyStrat.origin, enemyStrat.strat);
+		long deadline = scheduler.isImmediate() || skipping ? RPGAi.NO_DEADLINE : thinkUntil;
+		EnemyActor next;
+		while ((next = enemyOp.peekReady()) != null) {
+			boolean exclusive = next.brain.isAlerted() || next.brain.getState() != RPGAi.State.UNALERTED
+					|| playerCouldSee(next, next.getSpeedRemaining());
+			// could move then attack, even if it's only wandering
+			int reach = next.getSpeedRemaining() + next.getAttackReach();
+			if (!scheduler.canRunAlongside(next, reach, exclusive)) {
+				break;
+			}
 			
-		} else {
-			endEnemyTurn();
+			aiTimer.begin();
+			Strategy.Origin enemyStrat = enemyOp.planNext(deadline);
+			aiTimer.end();
+			if (enemyStrat == null) {
+				break;  // out of time, still thinking
+			}
+			
+			enemyStrat.strat.setup();
+			if (enemyStrat.strat.hasNextStep()) {
+				scheduler.add(enemyStrat.origin, enemyStrat.strat, exclusive, enemyFinished);
+			}
 		}
 		
-		
+		scheduler.setHeld(enemyOp.isThinking());
+		if (scheduler.isBusy()) {
+			RPG.setCurrentGameState(GameState.ENEMY_ANIMATION);
+		} else {
+			RPG.setCurrentGameState(GameState.ENEMY_TURN);
+			if (!enemyOp.isThinking()) {
+				endEnemyTurn();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if any tile within range of the actor (diagonals counting as one)
+	 * 		is visible to the player
+	 */
+	private boolean playerCouldSee(CharacterActor actor, int range) {
+		TeamVision vision = darkness.getPlayerVision();
+		MapInfo map = RPG.getCurrentMapInfo();
+		int cx = (int) actor.getX() / TILE_SIZE;
+		int cy = (int) actor.getY() / TILE_SIZE;
+		for (int x = Math.max(0, cx - range); x <= Math.min(map.getWidth() - 1, cx + range); x++) {
+			for (int y = Math.max(0, cy - range); y <= Math.min(map.getHeight() - 1, cy + range); y++) {
+				if (vision.isVisible(x, y)) {
+					return true;
+				}
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -193,7 +566,15 @@ public class RPGStage extends Stage {
 	 * Should be moved to RPG
 	 */
 	public void endEnemyTurn() {
+		GameLog.post(GameLog.Type.TURN_END, "enemy", null, -1, -1, turn, 0);
+		turn++;
+		GameLog.post(GameLog.Type.TURN_START, "player", null, -1, -1, turn, 0);
 		playerOp.beginTurn();
+		if (recorder != null) {
+			recorder.hash(turn, getStateHash());
+		} else if (replayer != null) {
+			replayer.checkHash(turn, getStateHash());
+		}
 		RPG.unblockUserInput(interactableTurnLock);
 		RPG.setCurrentGameState(GameState.PLAYER_TURN);
 		parent.passToUi(UiAction.TOGGLE_VISIBILITY, "enemyTurn");
@@ -243,7 +624,17 @@ public class RPGStage extends Stage {
 	 */
 	private void displayAttack(CharacterActor origin, AttackAction a) {
 		
-		Map<Vector2, Integer> tiles = Wayfinder.getAllSelectableTiles2(
+		if (a.isArea()) {
+			// area attacks can be aimed at any tile they can see
+			Map<Vector2, Integer> tiles = Pathfinders.get().getAllSelectableTiles(
+					origin, origin.getCell(), a.range, RPG.getCurrentMapInfo(), a.p);
+			if (a.p.is(RequireLineOfSight.REQUIRE)) {
+				tiles.keySet().retainAll(darkness.getVisibleTiles(origin.getCell(), a.range));
+			}
+			effects.addAttackTiles(origin, tiles, a);
+			return;
+		}
+		Map<Vector2, Integer> tiles = Pathfinders.get().getAllSelectableTiles(
 				origin, origin.getCell(), a.range, RPG.getCurrentMapInfo(), ActionProperties.getDefaultAttackProperties(true));
 		effects.addAttackTiles(origin, tiles, a);
 	}
@@ -254,12 +645,18 @@ public class RPGStage extends Stage {
 	 * @param origin the character to be moved
 	 */
 	private void displayMove(CharacterActor origin) {
-		Map<Vector2, Integer> checkedTiles = Wayfinder.getAllSelectableTiles2(origin, origin.getCell(), origin.getSpeedRemaining(), RPG.getCurrentMapInfo(),
-				new ActionProperties(EffectedByTerrain.RESPECT_TERRAIN, CanMoveThrough.PLAYER, CanSelect.TILE));   //Wayfinder.getAllMoveableTiles(target, mapInfo);
-		effects.addMoveTiles(origin, checkedTiles);
+		// keep the paths found, so hovering/selecting a tile doesn't search again
+		Wayfinder.buildPathTree(effects.getMoveTree(), origin, origin.getCell(), origin.getSpeedRemaining(), RPG.getCurrentMapInfo(),
+				new ActionProperties(EffectedByTerrain.RESPECT_TERRAIN, CanMoveThrough.PLAYER, CanSelect.TILE));
+		effects.addMoveTiles(origin);
 	}
 	
 	public void executeStep(CharacterActor actor, Step nextStep) {
+		if (recorder != null) {
+			recorder.step(actor, nextStep);
+		} else if (replayer != null) {
+			replayer.checkStep(this, actor, nextStep);
+		}
 		playerOp.executingStep(actor, nextStep);
 		enemyOp.executingStep(actor, nextStep);
 		if (nextStep instanceof MoveStep) {
@@ -267,16 +664,18 @@ public class RPGStage extends Stage {
 			Vector2 destination = ms.stepLocation;
 			actor.setPosition(destination.x * TILE_SIZE, destination.y * TILE_SIZE);
 			actor.moveSpaces(ms.cost);
-			if (actor instanceof PlayerActor) {
-				darkness.clearDarkness(actor);
-			}
+			GameLog.post(GameLog.Type.MOVE, actor, null, ms.cost, actor.getSpeedRemaining());
+			darkness.clearDarkness(actor);
 			
 		} else if (nextStep instanceof ActionStep){
 			ActionStep as = (ActionStep) nextStep;
 			// allow general attacks
 			CharacterActor target = as.target;
 						
-			if (target != null) {
+			if (as.action.isArea()) {
+				executeAreaAttack(actor, as);
+			} else if (target != null) {
+				GameLog.post(GameLog.Type.ATTACK, actor, target, as.action.damage, 0);
 				String displayText = "";
 				if (target instanceof EnemyActor) {
 					displayText += enemyOp.handleAttack(target, as.action);
@@ -293,26 +692,40 @@ public class RPGStage extends Stage {
 		}
 	}
 	
+	/**
+	 * Hits everyone of the other team in an attack's area. Who's hit is worked
+	 * out once, before anyone takes damage, so characters dying part way
+	 * doesn't change who else is hit.
+	 */
+	private void executeAreaAttack(CharacterActor actor, ActionStep as) {
+		areaTargets.clear();
+		engine.getSystem(AreaSystem.class).getTargets(actor, as.attackLocation, as.action, areaTargets);
+		GameLog.post(GameLog.Type.ATTACK, actor.getName(), null, (int) as.attackLocation.x,
+				(int) as.attackLocation.y, as.action.damage, areaTargets.size);
+		for (int i = 0; i < areaTargets.size; i++) {
+			CharacterActor target = areaTargets.get(i);
+			Operator op = target instanceof EnemyActor ? enemyOp : playerOp;
+			effects.displayDamage(target, "" + op.handleAttack(target, as.action));
+		}
+		areaTargets.clear();
+	}
+	
+	/**
+	 * Plays a strategy the player chose, on its own
+	 */
 	public void executeStrategy(CharacterActor actor, Strategy plan) {
 		plan.setup();
+		if (!plan.hasNextStep()) { return; }
 		
-		if (!plan.hasNextStep()) { 
-			if (RPG.getCurrentGameState() == GameState.ENEMY_TURN) {
-				enemyTurn();
-			}
-			return;
-		}
-		
-		consideredStrategy = new Strategy.Origin(plan, actor);
 		if (RPG.getCurrentGameState() == GameState.PLAYER_TURN) {
+			if (recorder != null) {
+				recorder.input(actor, plan);
+			}
 			interactableAnimationLock = RPG.blockUserInput();
 			RPG.setCurrentGameState(GameState.PLAYER_ANIMATION);
-		} else if (RPG.getCurrentGameState() == GameState.ENEMY_TURN){
-			RPG.setCurrentGameState(GameState.ENEMY_ANIMATION);
 		}
-		
-		executingAction = true;
-		actionDeltaTime = ANIMATION_DELAY;
+		scheduler.add(actor, plan, true, playerFinished);
+		scheduler.settle();
 	}
 	
 	@Override
@@ -337,36 +750,39 @@ public class RPGStage extends Stage {
 			a.act(delta);
 		}
 		
-		if (executingAction) {
-			//System.out.println("acting: " + actionDeltaTime);
-			actionDeltaTime += delta;
-			if (actionDeltaTime > ANIMATION_DELAY) {
-				executeStep(consideredStrategy.origin, consideredStrategy.strat.getNextStep());
-				if (!consideredStrategy.strat.hasNextStep()) {
-					executingAction = false;
-					if (RPG.getCurrentGameState() == GameState.PLAYER_ANIMATION) {
-						RPG.setCurrentGameState(GameState.PLAYER_TURN);
-						RPG.unblockUserInput(interactableAnimationLock);
-					} else if (RPG.getCurrentGameState() == GameState.ENEMY_ANIMATION) {
-						RPG.setCurrentGameState(GameState.ENEMY_TURN);
-						enemyTurn();
-					}
-					
-				} else {
-					actionDeltaTime -= ANIMATION_DELAY;
-				}
-			}
+		// keep map chunks near the camera loaded
+		RPG.getCurrentMapInfo().setFocus((int) cam.position.x / TILE_SIZE, (int) cam.position.y / TILE_SIZE);
+		
+		// enemies planning over several frames carry on where they left off
+		thinkUntil = System.nanoTime() + AI_BUDGET;
+		if (enemyOp.isThinking()) {
+			enemyTurn();
+		}
+		
+		// a replay feeds in the player's input as soon as it's their turn
+		boolean replaying = replayer != null;
+		while (replaying && !scheduler.isBusy() && RPG.getCurrentGameState() == GameState.PLAYER_TURN) {
+			replaying = replayer.applyNext(this);
 		}
+		
+		scheduler.update(delta * playbackSpeed.multiplier);
 			
 		act();
 	}
 	
 	@Override
 	public boolean touchDown(int screenX, int screenY, int pointer, int button) {
-		if (!RPG.userInputAllowed()) { return false; }
+		// clicking while a strategy plays finishes it
+		if (replayer == null && skipAnimation()) { return true; }
+		if (!RPG.userInputAllowed() || replayer != null) { return false; }
 		
 		Vector2 stageCoords = screenToStageCoordinates(new Vector2(screenX, screenY));
-		Actor selected = super.hit(stageCoords.x, stageCoords.y, true); 
+		// choice tiles are drawn over everything, so check them before actors
+		Actor selected = effects.getSelection(new Vector2(MathUtils.floor(stageCoords.x / TILE_SIZE),
+				MathUtils.floor(stageCoords.y / TILE_SIZE)));
+		if (selected == null) {
+			selected = hit(stageCoords.x, stageCoords.y, true); 
+		}
 		
 		if (selected instanceof PlayerActor) {  // player character hit, give them focus
 			//System.out.println(((PlayerActor) selected).getCell());
@@ -375,13 +791,16 @@ public class RPGStage extends Stage {
 		} else if (selected instanceof SelectableActionActor) {  // movement location selected, move to that location
 			SelectableActionActor sa = (SelectableActionActor) selected;
 			if (sa.isMove()) {
-				Strategy s = Wayfinder.getStrategyToTile(sa.getOrigin().getCell(), sa.getCell(),
-								sa.getOrigin(), ActionProperties.getDefaultMoveProperty(true));
+				Strategy s = effects.getMoveTree().getStrategy(sa.getCell());
 				executeStrategy(sa.getOrigin(), s); 
 			} else if (sa.isAttack()) {
 				Strategy s = new Strategy();
-				CharacterActor target = RPG.getCurrentMapInfo().characterAtPosition(sa.getCell());
-				s.addStep(new ActionStep(target, sa.getAttack()));
+				if (sa.getAttack().isArea()) {
+					s.addStep(new ActionStep(sa.getCell(), sa.getAttack()));
+				} else {
+					CharacterActor target = RPG.getCurrentMapInfo().characterAtPosition(sa.getCell());
+					s.addStep(new ActionStep(target, sa.getAttack()));
+				}
 				executeStrategy(sa.getOrigin(), s);
 			}
 		} else {	
@@ -407,6 +826,40 @@ public class RPGStage extends Stage {
 			addUiAction(origin);
 	}
 	
+	/**
+	 * @return index of characters on the stage, kept up to date by CharacterActor
+	 */
+	public HitIndex getHitIndex() {
+		return hitIndex;
+	}
+	
+	/**
+	 * @return the engine holding the entities of the characters on the stage
+	 */
+	public Engine getEngine() {
+		return engine;
+	}
+	
+	/**
+	 * Finds the character at a point on the stage from the hit index, looking 
+	 * only at characters on that tile. Characters are the only touchable actors
+	 * here: overlays, effects, popups and darkness are all Touchable.disabled
+	 * and the ui is on UiStage, so nothing else could be hit anyway. A new
+	 * touchable actor has to be added to the hit index to be hit.
+	 */
+	@Override
+	public Actor hit(float stageX, float stageY, boolean touchable) {
+		return hitIndex.hit(stageX, stageY, touchable);
+	}
+	
+	@Override
+	public void dispose() {
+		super.dispose();
+		stopRecording();
+		darkness.dispose();
+		effects.dispose();
+	}
+	
 	/**
 	 * Removes a character from the map and stage
 	 * @param c Character to remove, probably has issues if not 
@@ -414,8 +867,10 @@ public class RPGStage extends Stage {
 	 */
 	public void removeCharacter(CharacterActor c) {
 		RPG.getCurrentMapInfo().removeCharacter(c);
+		darkness.forgetObserver(c);
 		c.remove();
 		c.clear();
+		c.dispose();
 	}
 	
 	/**
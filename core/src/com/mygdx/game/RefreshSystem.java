@@ -0,0 +1,45 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+
+/**
+ * Gives characters back their moves and actions at the start of their
+ * team's turn. Teams are told apart by AI: enemies have a brain, the
+ * player's characters don't.
+ */
+public class RefreshSystem extends EntitySystem {
+	private ImmutableArray<Entity> players;
+	private ImmutableArray<Entity> enemies;
+	
+	@Override
+	public void addedToEngine(Engine engine) {
+		players = engine.getEntitiesFor(Family.all(StatsComponent.class).exclude(BrainComponent.class).get());
+		enemies = engine.getEntitiesFor(Family.all(StatsComponent.class, BrainComponent.class).get());
+	}
+	
+	public void refreshPlayers() {
+		refreshAll(players);
+	}
+	
+	public void refreshEnemies() {
+		refreshAll(enemies);
+	}
+	
+	private static void refreshAll(ImmutableArray<Entity> entities) {
+		for (int i = 0; i < entities.size(); i++) {
+			refresh(Mappers.stats.get(entities.get(i)));
+		}
+	}
+	
+	/**
+	 * Restores one character's moves and actions
+	 */
+	public static void refresh(StatsComponent stats) {
+		stats.speedRemaining = stats.maxSpeed;
+		stats.actionsLeft = stats.maxActions;
+	}
+}
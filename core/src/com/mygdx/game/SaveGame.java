@@ -0,0 +1,345 @@
+package com.mygdx.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+/**
+ * Snapshot of a battle in progress: the round, every character's position, health,
+ * moves and actions left, each enemy's ai state and random generator, darkness and
+ * what each team has explored. Capturing only copies that state into this object,
+ * so it's cheap enough to do between frames; writing the file happens on a
+ * background thread. Every field is written and read by hand, no reflection.
+ *
+ * Format: int MAGIC, short VERSION, then the fields in the order of write.
+ * Saves from other versions are rejected rather than guessed at.
+ */
+public class SaveGame {
+	public static final int MAGIC = 0x48525053;  // "HRPS"
+	public static final int VERSION = 1;
+	public static final String EXTENSION = ".hrps";
+	public static final String QUICK_SAVE = "saves/quicksave" + EXTENSION;  // local path of the quick save
+
+	private static AsyncExecutor writer;  // writes saves off the render thread, created when first needed
+
+	/**
+	 * State of one character
+	 */
+	public static class CharacterState {
+		public int id;
+		public boolean player;
+		public String className;  // to rebuild it with CharacterInfo.getCharacterInfo
+		public int x, y;  // tile
+		public int health, speed, actionsLeft;
+
+		// enemies only
+		public int aiState = -1;  // RPGAi.State ordinal
+		public long randomState, randomGamma;
+		public int[] alertedTo;  // ids, most important first
+	}
+
+	public String mapPath;
+	public int turn;
+	public long seed;
+	public long randomState, randomGamma;  // the stage's generator
+	public int nextId;
+	public int width, height;  // map size, darkness and explored are indexed x * height + y
+	public BitSet darkness = new BitSet();
+	public BitSet playerExplored = new BitSet();
+	public BitSet enemyExplored = new BitSet();
+	public CharacterState[] characters;
+
+	/**
+	 * Copies the current state of a battle
+	 * @param stage the battle, which should be able to save (see RPGStage.canSave)
+	 * @return the snapshot
+	 */
+	public static SaveGame capture(RPGStage stage) {
+		SaveGame s = new SaveGame();
+		MapInfo map = RPG.getCurrentMapInfo();
+		s.mapPath = RPG.MAP_PATH;
+		s.turn = stage.getTurn();
+		s.seed = stage.getSeed();
+		s.randomState = stage.getRandom().getState();
+		s.randomGamma = stage.getRandom().getGamma();
+		s.nextId = stage.getNextId();
+		s.width = map.getWidth();
+		s.height = map.getHeight();
+		map.getDarkness(s.darkness);
+		s.playerExplored.or(stage.darkness.getPlayerVision().getExplored());
+		s.enemyExplored.or(stage.darkness.getEnemyVision().getExplored());
+
+		List<CharacterState> chars = new ArrayList<>();
+		for (CharacterActor a : stage.playerOp.getActors()) {
+			chars.add(captureCharacter(a, true));
+		}
+		for (CharacterActor a : stage.enemyOp.getActors()) {
+			chars.add(captureCharacter(a, false));
+		}
+		s.characters = chars.toArray(new CharacterState[chars.size()]);
+		return s;
+	}
+
+	private static CharacterState captureCharacter(CharacterActor a, boolean player) {
+		CharacterState c = new CharacterState();
+		c.id = a.getId();
+		c.player = player;
+		c.className = a.getClassName();
+		c.x = (int) a.getX() / RPGStage.TILE_SIZE;
+		c.y = (int) a.getY() / RPGStage.TILE_SIZE;
+		c.health = a.getHealth();
+		c.speed = a.getSpeedRemaining();
+		c.actionsLeft = a.getActionsLeft();
+		if (a instanceof EnemyActor) {
+			RPGAi brain = ((EnemyActor) a).brain;
+			c.aiState = brain.getState().ordinal();
+			c.randomState = brain.getRandom().getState();
+			c.randomGamma = brain.getRandom().getGamma();
+			c.alertedTo = new int[brain.getAlertedTo().size()];
+			int i = 0;
+			for (CharacterActor target : brain.getAlertedTo()) {
+				c.alertedTo[i++] = target.getId();
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Puts this snapshot's state back into a battle on the same map, replacing
+	 * every character in it
+	 * @param stage the battle, which should be able to save (see RPGStage.canSave)
+	 */
+	public void restore(RPGStage stage) {
+		MapInfo map = RPG.getCurrentMapInfo();
+		if (map.getWidth() != width || map.getHeight() != height) {
+			throw new IllegalArgumentException("save is for a different map: " + mapPath);
+		}
+		List<CharacterActor> old = stage.takeCharacters();
+
+		stage.darkness.addDarknessToMap();  // resets vision too
+		map.setDarkness(darkness);
+
+		CharacterActor[] added = new CharacterActor[characters.length];
+		for (int i = 0; i < characters.length; i++) {
+			CharacterState c = characters[i];
+			CharacterInfo info = CharacterInfo.getCharacterInfo(c.className);
+			CharacterActor a;
+			if (c.player) {
+				a = new PlayerActor(stage, info);
+			} else {
+				EnemyActor e = new EnemyActor(stage, info);
+				e.brain.setRandom(new GameRandom(c.randomState, c.randomGamma));
+				e.brain.setState(RPGAi.State.values()[c.aiState]);
+				a = e;
+			}
+			a.setHealth(c.health);
+			a.setSpeedRemaining(c.speed);
+			a.setActionsLeft(c.actionsLeft);
+			stage.restoreCharacter(a, c.player, c.x, c.y, c.id);
+			added[i] = a;
+		}
+		// alerts refer to other characters, so only once all are back
+		for (int i = 0; i < characters.length; i++) {
+			if (characters[i].alertedTo == null) { continue; }
+			List<CharacterActor> alerts = new ArrayList<>();
+			for (int id : characters[i].alertedTo) {
+				CharacterActor target = stage.getCharacter(id);
+				if (target != null) {
+					alerts.add(target);
+				}
+			}
+			((EnemyActor) added[i]).brain.setAlertedTo(alerts);
+		}
+
+		stage.darkness.getPlayerVision().setExplored(playerExplored);
+		stage.darkness.getEnemyVision().setExplored(enemyExplored);
+		stage.restoreState(turn, new GameRandom(randomState, randomGamma), nextId);
+
+		// only let go of the old characters' textures once the new ones hold them
+		for (CharacterActor c : old) {
+			c.dispose();
+		}
+	}
+
+	/**
+	 * Writes this snapshot
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeUTF(mapPath);
+		out.writeInt(turn);
+		out.writeLong(seed);
+		out.writeLong(randomState);
+		out.writeLong(randomGamma);
+		out.writeInt(nextId);
+		out.writeInt(width);
+		out.writeInt(height);
+		writeBits(out, darkness);
+		writeBits(out, playerExplored);
+		writeBits(out, enemyExplored);
+
+		out.writeInt(characters.length);
+		for (CharacterState c : characters) {
+			out.writeInt(c.id);
+			out.writeBoolean(c.player);
+			out.writeUTF(c.className);
+			out.writeShort(c.x);
+			out.writeShort(c.y);
+			out.writeInt(c.health);
+			out.writeInt(c.speed);
+			out.writeInt(c.actionsLeft);
+			if (!c.player) {
+				out.writeByte(c.aiState);
+				out.writeLong(c.randomState);
+				out.writeLong(c.randomGamma);
+				out.writeShort(c.alertedTo.length);
+				for (int id : c.alertedTo) {
+					out.writeInt(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot written by write
+	 * @throws IOException if it's not a save, is from another version, is cut short
+	 * 		or holds values that can't be restored
+	 */
+	public static SaveGame read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a save");
+		}
+		int version = in.readShort();
+		if (version != VERSION) {
+			throw new IOException("save version " + version + " isn't supported");
+		}
+		SaveGame s = new SaveGame();
+		s.mapPath = in.readUTF();
+		s.turn = in.readInt();
+		s.seed = in.readLong();
+		s.randomState = in.readLong();
+		s.randomGamma = in.readLong();
+		s.nextId = in.readInt();
+		s.width = in.readInt();
+		s.height = in.readInt();
+		s.darkness = readBits(in);
+		s.playerExplored = readBits(in);
+		s.enemyExplored = readBits(in);
+
+		s.characters = new CharacterState[checkCount(in.readInt())];
+		for (int i = 0; i < s.characters.length; i++) {
+			CharacterState c = new CharacterState();
+			c.id = in.readInt();
+			c.player = in.readBoolean();
+			c.className = in.readUTF();
+			c.x = in.readShort();
+			c.y = in.readShort();
+			c.health = in.readInt();
+			c.speed = in.readInt();
+			c.actionsLeft = in.readInt();
+			if (!c.player) {
+				c.aiState = in.readByte();
+				if (c.aiState < 0 || c.aiState >= RPGAi.State.values().length) {
+					throw new IOException("unknown ai state " + c.aiState);
+				}
+				c.randomState = in.readLong();
+				c.randomGamma = in.readLong();
+				c.alertedTo = new int[checkCount(in.readShort())];
+				for (int j = 0; j < c.alertedTo.length; j++) {
+					c.alertedTo[j] = in.readInt();
+				}
+			}
+			s.characters[i] = c;
+		}
+		return s;
+	}
+
+	/**
+	 * Checks a count read from a save, so a corrupt one fails the read
+	 */
+	private static int checkCount(int count) throws IOException {
+		if (count < 0) {
+			throw new IOException("negative count " + count);
+		}
+		return count;
+	}
+
+	private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+		long[] words = bits.toLongArray();
+		out.writeInt(words.length);
+		for (long w : words) {
+			out.writeLong(w);
+		}
+	}
+
+	private static BitSet readBits(DataInputStream in) throws IOException {
+		long[] words = new long[checkCount(in.readInt())];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = in.readLong();
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Writes this snapshot to a file on a background thread. The file is written
+	 * beside the target first, so a crash part way never leaves a broken save.
+	 * @param file file to save to, replaced if it exists
+	 * @return result to check when it's done, true if written
+	 */
+	public AsyncResult<Boolean> writeAsync(final FileHandle file) {
+		if (writer == null) {
+			writer = new AsyncExecutor(1, "SaveWriter");
+		}
+		return writer.submit(new AsyncTask<Boolean>() {
+			@Override
+			public Boolean call() {
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+					DataOutputStream out = new DataOutputStream(bytes);
+					write(out);
+					out.close();
+					FileHandle temp = file.sibling(file.name() + ".tmp");
+					temp.writeBytes(bytes.toByteArray(), false);
+					temp.moveTo(file);
+					return true;
+				} catch (Exception e) {
+					Gdx.app.error("SaveGame", "couldn't save " + file.path(), e);
+					return false;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads a save from a file
+	 * @return the snapshot, or null if the file is missing or unreadable
+	 */
+	public static SaveGame load(FileHandle file) {
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = new DataInputStream(file.read(8192));
+		try {
+			return read(in);
+		} catch (IOException e) {
+			Gdx.app.error("SaveGame", "couldn't load " + file.path(), e);
+			return null;
+		} finally {
+			try {
+				in.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+}
@@ -1,12 +1,16 @@
 package com.mygdx.game;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.utils.Pool.Poolable;
 
-public class SelectableActionActor extends Actor {
+/**
+ * An overlay tile the player can select to move to or attack. Pooled by
+ * EffectsManager, so set up with setMove / setAttack instead of constructors.
+ */
+public class SelectableActionActor extends Actor implements Poolable {
 	
 	enum ActionType {
 		MOVE, ATTACK;
@@ -18,22 +22,50 @@ public class SelectableActionActor extends Actor {
 	private AttackAction a;
 	private ActionType type;
 	
+	public SelectableActionActor() {
+	}
+	
 	// for attacks
 	public SelectableActionActor(CharacterActor origin, Texture t, AttackAction a) {
+		setAttack(origin, t, a);
+	}
+	
+	// for movement
+	public SelectableActionActor(CharacterActor origin, Texture t, int cost) {
+		setMove(origin, t, cost);
+	}
+	
+	/**
+	 * Sets this tile up as an attack choice
+	 */
+	public void setAttack(CharacterActor origin, Texture t, AttackAction a) {
 		this.texture = t;
 		this.a = a;
+		this.cost = 0;
 		this.origin = origin;
 		this.type = ActionType.ATTACK;
 	}
 	
-	// for movement
-	public SelectableActionActor(CharacterActor origin, Texture t, int cost) {
+	/**
+	 * Sets this tile up as a move choice
+	 */
+	public void setMove(CharacterActor origin, Texture t, int cost) {
 		this.texture = t;
+		this.a = null;
 		this.cost = cost;
 		this.origin = origin;
 		this.type = ActionType.MOVE;
 	}
 	
+	@Override
+	public void reset() {
+		texture = null;
+		a = null;
+		origin = null;
+		cost = 0;
+		type = null;
+	}
+	
 	@Override
 	public void draw(Batch batch, float alpha) {
 		batch.draw(texture,  getX(),  getY());
@@ -70,11 +102,11 @@ public class SelectableActionActor extends Actor {
 	
 	// depricate
 	public static Texture getMoveableTexture() {
-		return new Texture(Gdx.files.internal("data/MiscSprites/moveable.png"));
+		return Assets.getTexture("data/MiscSprites/moveable.png");
 	}
 	
 	public static Texture getAttackableTexture() {
-		return new Texture(Gdx.files.internal("data/MiscSprites/attackable.png"));
+		return Assets.getTexture("data/MiscSprites/attackable.png");
 	}
 }
 	
@@ -0,0 +1,12 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.graphics.Texture;
+
+/**
+ * What an entity looks like on the map
+ */
+public class SpriteComponent implements Component {
+	public Texture texture;
+	public boolean hiddenInFog;  // only drawn on tiles the player can see
+}
@@ -0,0 +1,17 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * A character's stats and what it has left this turn
+ */
+public class StatsComponent implements Component {
+	public int maxSpeed;  // how many tiles can be moved each turn
+	public int maxHealth;  // how much dmg it can take
+	public int maxActions;
+	public int initiative;  // who goes first in a turn, highest first
+
+	public int speedRemaining;  // number of moves left this turn
+	public int healthRemaining;
+	public int actionsLeft;
+}
@@ -124,6 +124,14 @@ public class Strategy implements Comparable {
 			steps.add(s);
 	}
 	
+	/**
+	 * @param i index of the step, from 0
+	 * @return the step, regardless of where iteration is
+	 */
+	public Step getStep(int i) {
+		return steps.get(i);
+	}
+	
 	/**
 	 * @return Number of steps currently in strategy
 	 */
@@ -0,0 +1,289 @@
+package com.mygdx.game;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.mygdx.game.Strategy.ActionStep;
+import com.mygdx.game.Strategy.MoveStep;
+import com.mygdx.game.Strategy.Step;
+
+/**
+ * Plays strategies a step at a time, running several at once when they can't
+ * affect each other. Strategies wait on a timeline, ordered by the tick their
+ * next step is due and then by initiative. Time is split into ticks of
+ * RPGStage.ANIMATION_DELAY, and each tick every step due is executed; once all
+ * have, the listeners of any strategies that finished are told, which may
+ * start more. Since what happens each tick doesn't depend on frame times or
+ * playback speed, a battle plays out the same at any speed.
+ *
+ * In immediate mode (instant playback, replays, running without a display)
+ * the timeline runs through as soon as whatever started things settles it.
+ *
+ * While held (an enemy still planning over several frames) no ticks run, so
+ * whatever it plans starts on the same tick it would have had it planned at once.
+ *
+ * A running strategy reserves every cell it starts on, moves through or attacks.
+ * Another may only start alongside it if none of those cells are within its reach,
+ * and exclusive strategies (i.e. attacks) only ever run alone.
+ */
+public class StrategyScheduler {
+	private final RPGStage stage;
+	private final PriorityQueue<Track> timeline;  // every running strategy, next due first
+	private final Array<Track> finished;  // strategies that finished this tick, reused
+	private long now;  // ticks run so far
+	private int started;  // strategies started so far, breaks ties in initiative
+	private float sinceTick;  // scaled seconds since the last tick
+	private boolean immediate;  // run the whole timeline as soon as it's settled
+	private boolean running;  // in runAll, so starting more from a listener doesn't nest another
+	private boolean held;  // no ticks until released
+
+	/**
+	 * Told when a strategy has executed its last step
+	 */
+	public interface Listener {
+		public void strategyFinished(Track track);
+	}
+
+	// next due first, then higher initiative, then first started
+	private static final Comparator<Track> TIMELINE_ORDER = new Comparator<Track>() {
+		@Override
+		public int compare(Track a, Track b) {
+			if (a.due != b.due) {
+				return Long.compare(a.due, b.due);
+			}
+			if (a.actor.getInitiative() != b.actor.getInitiative()) {
+				return Integer.compare(b.actor.getInitiative(), a.actor.getInitiative());
+			}
+			return Integer.compare(a.order, b.order);
+		}
+	};
+
+	/**
+	 * A strategy being played and the cells it reserves
+	 */
+	public static class Track {
+		public final CharacterActor actor;
+		public final Strategy plan;
+		public final boolean exclusive;  // can't share ticks with anything else
+		private final Listener listener;  // may be null
+		private final IntArray reserved;  // x, y pairs
+		private int spread;  // how far past a reserved cell its attacks' areas go
+		private final int order;
+		private long due;  // tick the next step runs on
+
+		Track(CharacterActor actor, Strategy plan, boolean exclusive, Listener listener, int order) {
+			this.actor = actor;
+			this.plan = plan;
+			this.exclusive = exclusive;
+			this.listener = listener;
+			this.order = order;
+			reserved = new IntArray(2 + plan.getNumSteps() * 2);
+			reserved.add((int) actor.getX() / RPGStage.TILE_SIZE, (int) actor.getY() / RPGStage.TILE_SIZE);
+			for (int i = 0; i < plan.getNumSteps(); i++) {
+				Step s = plan.getStep(i);
+				if (s instanceof MoveStep) {
+					MoveStep ms = (MoveStep) s;
+					reserved.add((int) ms.stepLocation.x, (int) ms.stepLocation.y);
+				} else if (s instanceof ActionStep) {
+					ActionStep as = (ActionStep) s;
+					reserved.add((int) as.attackLocation.x, (int) as.attackLocation.y);
+					spread = Math.max(spread, as.action.areaSize);
+				}
+			}
+		}
+
+		/**
+		 * @return true if any reserved cell, or area around one its attacks could
+		 * 		hit, is within range tiles (diagonals counting as one) of x, y
+		 */
+		boolean reservesNear(int x, int y, int range) {
+			range += spread;
+			for (int i = 0; i < reserved.size; i += 2) {
+				if (Math.abs(reserved.get(i) - x) <= range && Math.abs(reserved.get(i + 1) - y) <= range) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public StrategyScheduler(RPGStage stage) {
+		this.stage = stage;
+		timeline = new PriorityQueue<>(16, TIMELINE_ORDER);
+		finished = new Array<>();
+	}
+
+	/**
+	 * @return true if any strategy is playing
+	 */
+	public boolean isBusy() {
+		return !timeline.isEmpty();
+	}
+
+	/**
+	 * @param immediate true to have strategies play out as soon as they're settled,
+	 * 		false to play them over time with update
+	 */
+	public void setImmediate(boolean immediate) {
+		this.immediate = immediate;
+	}
+
+	public boolean isImmediate() {
+		return immediate;
+	}
+
+	/**
+	 * @param held true to stop ticks running until released with false
+	 */
+	public void setHeld(boolean held) {
+		this.held = held;
+	}
+	
+	public boolean isHeld() {
+		return held;
+	}
+
+	/**
+	 * @return number of ticks run so far
+	 */
+	public long getTick() {
+		return now;
+	}
+
+	/**
+	 * Checks if a character could start a strategy now without it possibly
+	 * affecting, or being affected by, what's already playing
+	 * @param candidate character about to plan
+	 * @param reach how far from its cell its strategy could reach, moves and
+	 * 		then attacks (see CharacterActor.getAttackReach)
+	 * @param exclusive if its strategy will need to run alone
+	 */
+	public boolean canRunAlongside(CharacterActor candidate, int reach, boolean exclusive) {
+		if (timeline.isEmpty()) { return true; }
+		if (exclusive) { return false; }
+		int x = (int) candidate.getX() / RPGStage.TILE_SIZE;
+		int y = (int) candidate.getY() / RPGStage.TILE_SIZE;
+		for (Track t : timeline) {
+			if (t.exclusive || t.reservesNear(x, y, reach)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Starts playing a strategy, its first step coming on the next tick.
+	 * Call settle once done starting things.
+	 * @param exclusive true if nothing else may play alongside it
+	 * @param listener told when it finishes, may be null
+	 */
+	public void add(CharacterActor actor, Strategy plan, boolean exclusive, Listener listener) {
+		plan.setup();
+		if (timeline.isEmpty()) {
+			sinceTick = RPGStage.ANIMATION_DELAY;  // start right away, as before anything played
+		}
+		Track t = new Track(actor, plan, exclusive, listener, started++);
+		t.due = now + 1;
+		timeline.add(t);
+	}
+
+	/**
+	 * In immediate mode, runs the timeline until nothing is playing.
+	 * Otherwise does nothing, leaving update to play things over time.
+	 */
+	public void settle() {
+		if (immediate) {
+			runAll();
+		}
+	}
+
+	/**
+	 * Moves time forward, running any ticks that are due
+	 * @param delta seconds passed, already scaled by playback speed
+	 */
+	public void update(float delta) {
+		if (immediate) {
+			settle();
+			return;
+		}
+		if (timeline.isEmpty() || held) { return; }
+		sinceTick += delta;
+		// at higher speeds, a long frame can cover more than one tick
+		while (!held && !timeline.isEmpty() && sinceTick > RPGStage.ANIMATION_DELAY) {
+			sinceTick -= RPGStage.ANIMATION_DELAY;
+			tick();
+		}
+	}
+
+	/**
+	 * Executes every step due this tick, then tells the listeners of any
+	 * strategies that finished
+	 */
+	public void tick() {
+		now++;
+		// anything rescheduled or started during the tick is due on a later one
+		while (!timeline.isEmpty() && timeline.peek().due <= now) {
+			Track t = timeline.poll();
+			if (t.actor.getStage() != null && t.plan.hasNextStep()) {
+				stage.executeStep(t.actor, t.plan.getNextStep());
+			}
+			if (t.actor.getStage() != null && t.plan.hasNextStep()) {
+				t.due = now + 1;
+				timeline.add(t);
+			} else {
+				finished.add(t);
+			}
+		}
+
+		for (int i = 0; i < finished.size; i++) {
+			Track t = finished.get(i);
+			if (t.listener != null) {
+				t.listener.strategyFinished(t);
+			}
+		}
+		finished.clear();
+	}
+
+	/**
+	 * Runs ticks until every strategy playing now is done, i.e. when the player
+	 * clicks to skip, or until held. Strategies started along the way still start on the
+	 * tick they would have, so skipping doesn't change how things play out.
+	 */
+	public void skip() {
+		Array<Track> waiting = new Array<>(timeline.size());
+		for (Track t : timeline) {
+			waiting.add(t);
+		}
+		while (!held && !timeline.isEmpty() && anyRunning(waiting)) {
+			tick();
+		}
+		sinceTick = RPGStage.ANIMATION_DELAY;
+	}
+
+	/**
+	 * Runs ticks until nothing is playing, including anything listeners start
+	 * along the way, or until held. Does nothing if already running them.
+	 */
+	public void runAll() {
+		if (running) { return; }
+		running = true;
+		try {
+			while (!held && !timeline.isEmpty()) {
+				tick();
+			}
+		} finally {
+			running = false;
+		}
+	}
+
+	private boolean anyRunning(Array<Track> tracks) {
+		for (Track t : tracks) {
+			if (timeline.contains(t)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,103 @@
+package com.mygdx.game;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Tracks what one team can see. Each tile counts how many of the team's
+ * observers currently see it, so observers can be added, moved and removed
+ * by only touching the tiles their view gained or lost. Tiles the team
+ * has ever seen stay explored after they go out of view.
+ */
+public class TeamVision {
+	private final int width, height;
+	private int[] seenBy;  // number of observers seeing each tile, x * height + y
+	private BitSet explored;  // tiles that have ever been seen
+	
+	public TeamVision(int width, int height) {
+		this.width = width;
+		this.height = height;
+		seenBy = new int[width * height];
+		explored = new BitSet(width * height);
+	}
+	
+	private int index(Vector2 v) {
+		return (int) v.x * height + (int) v.y;
+	}
+	
+	private boolean inBounds(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+	
+	/**
+	 * Counts one more observer as seeing a tile
+	 * @param v position of the tile
+	 * @return true if no one on the team saw the tile before
+	 */
+	public boolean addSight(Vector2 v) {
+		if (!inBounds((int) v.x, (int) v.y)) { return false; }
+		int i = index(v);
+		explored.set(i);
+		return seenBy[i]++ == 0;
+	}
+	
+	/**
+	 * Counts one less observer as seeing a tile
+	 * @param v position of the tile
+	 * @return true if no one on the team sees the tile anymore
+	 */
+	public boolean removeSight(Vector2 v) {
+		if (!inBounds((int) v.x, (int) v.y)) { return false; }
+		int i = index(v);
+		assert seenBy[i] > 0 : "Removed sight of a tile no one saw";
+		return --seenBy[i] == 0;
+	}
+	
+	/**
+	 * @return true if anyone on the team currently sees the tile
+	 */
+	public boolean isVisible(int x, int y) {
+		return inBounds(x, y) && seenBy[x * height + y] > 0;
+	}
+	
+	public boolean isVisible(Vector2 v) {
+		return isVisible((int) v.x, (int) v.y);
+	}
+	
+	/**
+	 * @return true if anyone on the team has ever seen the tile
+	 */
+	public boolean isExplored(int x, int y) {
+		return inBounds(x, y) && explored.get(x * height + y);
+	}
+	
+	public boolean isExplored(Vector2 v) {
+		return isExplored((int) v.x, (int) v.y);
+	}
+	
+	/**
+	 * @return tiles the team has ever seen, indexed x * height + y. Not a copy.
+	 */
+	public BitSet getExplored() {
+		return explored;
+	}
+	
+	/**
+	 * Replaces what the team has explored, i.e. when loading a save
+	 * @param tiles tiles explored, indexed x * height + y
+	 */
+	public void setExplored(BitSet tiles) {
+		explored.clear();
+		explored.or(tiles);
+	}
+	
+	/**
+	 * Forgets everything the team has seen or explored
+	 */
+	public void clear() {
+		Arrays.fill(seenBy, 0);
+		explored.clear();
+	}
+}
@@ -14,7 +14,7 @@ import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 public class TileInfo {
 	private final String name;  // name of the tile
 	private final int speedToCross;  // amount of movement it takes to cross this tile
-	private final TiledMapTile tile;  // reference to the TiledMap tile
+	private final TiledMapTile tile;  // reference to the TiledMap tile, null if set up from an id
 	private final int tiledId;  // Id of the Tiled tile
 	private final boolean isWall;
 	
@@ -28,12 +28,12 @@ public class TileInfo {
 	 * only once per type. Name and Id must be unique.
 	 */
 	private TileInfo(String name, int speedToCross, boolean isWall,
-			TiledMapTile tile) {
+			TiledMapTile tile, int tiledId) {
 		this.name = name;
 		this.isWall = isWall;
 		this.speedToCross = speedToCross;
 		this.tile = tile;
-		this.tiledId = tile.getId();
+		this.tiledId = tiledId;
 		
 		// setup static fields if not already created
 		if (TileInfo.instances == null) {
@@ -57,7 +57,26 @@ public class TileInfo {
 	public static boolean setupTile(String name, int speedToCross, boolean isWall,
 						  TiledMapTile tile) {
 		if (TileInfo.instances == null || !TileInfo.instances.containsKey(name)) {
-			new TileInfo(name, speedToCross, isWall, tile);
+			new TileInfo(name, speedToCross, isWall, tile, tile.getId());
+			return true;
+		} else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Creates a new type of tile from just its Tiled id, so no TiledMap (or
+	 * textures) is needed. name and id must be unique
+	 * 
+	 * @param name name of the tile
+	 * @param speedToCross movement required for a character to cross this tile
+	 * @param tiledId id of the Tiled tile this class is describing
+	 * @return true if properly setup, false if already created
+	 */
+	public static boolean setupTile(String name, int speedToCross, boolean isWall,
+						  int tiledId) {
+		if (TileInfo.instances == null || !TileInfo.instances.containsKey(name)) {
+			new TileInfo(name, speedToCross, isWall, null, tiledId);
 			return true;
 		} else {
 			return false;
@@ -133,7 +152,8 @@ public class TileInfo {
 	}
 	
 	/**
-	 * @return reference to the TileMapTile this class describes
+	 * @return reference to the TileMapTile this class describes, or null if
+	 * 		it was set up from an id
 	 */
 	public TiledMapTile getTileTile() {
 		return this.tile;
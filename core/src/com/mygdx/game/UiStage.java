@@ -9,6 +9,7 @@ import java.util.Map;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.Animation;
@@ -20,6 +21,8 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.mygdx.game.UiActionActor.SpecialAction;
 
 /**
@@ -35,6 +38,8 @@ public class UiStage extends Stage {
 	private Vector2 actionBoxLocation;
 	private List<UiActionActor> selectables; 
 	private Map<String, Actor> reusableActors;
+	private Skin skin;  // for text, i.e. the profiler overlay
+	private Label speedLabel;  // current playback speed
 	
 	/**
 	 * @param cam the camera other stages are using
@@ -73,6 +78,50 @@ public class UiStage extends Stage {
 		enemyTurn.setY(getHeight() - 30 - ta.getTextures().first().getHeight());
 		enemyTurn.setVisible(false);
 		addActor(enemyTurn);
+		
+		skin = Assets.getSkin(DamagePopups.SKIN_PATH);
+		
+		// only shown when strategies play at other than normal speed
+		speedLabel = new Label("", skin);
+		speedLabel.setTouchable(Touchable.disabled);
+		speedLabel.setVisible(false);
+		addActor(speedLabel);
+		
+		ProfilerOverlay profiler = new ProfilerOverlay(skin);
+		profiler.setVisible(Profiler.isEnabled());
+		reusableActors.put("profiler", profiler);
+		addActor(profiler);
+	}
+	
+	/**
+	 * Moves to the next playback speed for strategies, showing it in the corner
+	 */
+	public void cyclePlaybackSpeed() {
+		RPGStage.PlaybackSpeed speed = parent.cyclePlaybackSpeed();
+		speedLabel.setText("speed: " + speed.label);
+		speedLabel.pack();
+		speedLabel.setPosition(getWidth() - speedLabel.getWidth() - 10, getHeight() - speedLabel.getHeight() - 10);
+		speedLabel.setVisible(speed != RPGStage.PlaybackSpeed.NORMAL);
+	}
+	
+	/**
+	 * Shows or hides the profiler overlay, only recording while it's shown
+	 */
+	public void toggleProfiler() {
+		Profiler.setEnabled(!Profiler.isEnabled());
+		reusableActors.get("profiler").setVisible(Profiler.isEnabled());
+	}
+	
+	/**
+	 * Writes the profiler's recorded frames to a CSV file in local storage
+	 * @return the file written, or null if the profiler isn't recording
+	 */
+	public FileHandle dumpProfile() {
+		if (!Profiler.isEnabled()) { return null; }
+		FileHandle file = Gdx.files.local("profile-" + System.currentTimeMillis() + ".csv");
+		Profiler.dumpCsv(file);
+		Gdx.app.log("Profiler", "wrote " + file.path());
+		return file;
 	}
 	
 	public void toggleVisibility(String name) {
@@ -117,7 +166,6 @@ public class UiStage extends Stage {
 		int currentX = (int) actionBoxLocation.x;
 		
 		for (UiActionActor a : selectables) {
-			System.out.println(currentX + ", " + actionBoxLocation.y);
 			a.setPosition(currentX, actionBoxLocation.y);
 			a.setBounds(a.getX(), a.getY(), size, size);
 			a.setVisible(true);
@@ -133,6 +181,18 @@ public class UiStage extends Stage {
 
 	@Override
 	public boolean keyUp(int keycode) {
+		// these keys work even while input is locked
+		if (keycode == Input.Keys.F3) {
+			toggleProfiler();
+			return true;
+		} else if (keycode == Input.Keys.F4) {
+			return dumpProfile() != null;
+		} else if (keycode == Input.Keys.TAB) {
+			// can be changed while strategies are playing
+			cyclePlaybackSpeed();
+			return true;
+		}
+		
 		// pans the camera
 		// TODO make this a smooth transition 
 		if (parent.userInputAllowed()) {
@@ -146,6 +206,12 @@ public class UiStage extends Stage {
 		        cam.translate(0,-32);
 			else if (keycode == Input.Keys.SPACE)
 				parent.passToRPG(new UiActionActor(null, null, SpecialAction.END_TURN));
+			else if (keycode == Input.Keys.F5)
+				parent.quickSave();
+			else if (keycode == Input.Keys.F9)
+				parent.quickLoad();
+			else if (keycode == Input.Keys.F6)
+				parent.cyclePathfinder();
 			else 
 				return false;  // didn't get handled here
 			
@@ -197,5 +263,11 @@ public class UiStage extends Stage {
 		// TODO Auto-generated method stub
 		return false;
 	}
+	
+	@Override
+	public void dispose() {
+		super.dispose();
+		Assets.release(skin);
+	}
 
 }
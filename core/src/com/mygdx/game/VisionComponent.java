@@ -0,0 +1,10 @@
+package com.mygdx.game;
+
+import com.badlogic.ashley.core.Component;
+
+/**
+ * How far an entity can see
+ */
+public class VisionComponent implements Component {
+	public int range;  // in tiles
+}
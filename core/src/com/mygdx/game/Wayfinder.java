@@ -11,6 +11,7 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Queue;
 import com.mygdx.game.ActionProperties.CanMoveThrough;
 import com.mygdx.game.ActionProperties.CanSelect;
@@ -23,9 +24,39 @@ import com.mygdx.game.Strategy.MoveStep;
 
 /**
  * Static class for pathfinding tasks, may be replaced with more efficient/sophisticated
- *  code at some point 
+ *  code at some point. Also the default Pathfinder backend, see PATHFINDER.
+ *  Strategies and sight checks made here go through whichever backend is in use.
  */
 public class Wayfinder {
+	private static final Profiler.Counter searchCounter = Profiler.counter("searches");
+	private static final Profiler.Counter expandedCounter = Profiler.counter("nodes expanded");
+	
+	/**
+	 * This class's searches as a Pathfinder backend
+	 */
+	public static final Pathfinder PATHFINDER = new Pathfinder() {
+		@Override
+		public String getName() {
+			return "wayfinder";
+		}
+		
+		@Override
+		public Map<Vector2, Integer> getAllSelectableTiles(CharacterActor actor, Vector2 origin,
+				int reach, MapInfo map, ActionProperties p) {
+			return getAllSelectableTiles2(actor, origin, reach, map, p);
+		}
+		
+		@Override
+		public SortedMap<Integer, Vector2> getPathToTiles(Vector2 origin, Set<Vector2> targets,
+				MapInfo map, CharacterActor actor, ActionProperties p) {
+			return Wayfinder.getPathToTiles(origin, targets, map, actor, p);
+		}
+		
+		@Override
+		public boolean traceLine(Vector2 a, Vector2 b, MapInfo map) {
+			return Wayfinder.traceLine(a, b, map);
+		}
+	};
 	
 	/**
 	 * Inner class for custom sorting using Dijkstra's algorithm
@@ -148,13 +179,15 @@ public class Wayfinder {
 		Map<Vector2, CharacterActor> charMap = map.getCharacters();		
 	
 		// first iteration
-		addIfSelectable(origin, reach, map.getTileInfo(origin), charMap, p, selectableTiles, actor);
+		addIfSelectable(origin, reach, map.isWall(origin), charMap, p, selectableTiles, actor);
 		DijkstraNode start = new DijkstraNode(origin, reach);
 		exploredNodes.add(start.node);
 		tilesToCheck.add(start);
 		
+		searchCounter.inc();
 		while (!tilesToCheck.isEmpty()) {
 			DijkstraNode nodeToCheck = tilesToCheck.poll();
+			expandedCounter.inc();
 			
 			// Check all adjacent nodes to see if they're selectable or ignorable
 			for (Vector2 v : getAdjacentUncheckedTiles(exploredNodes, nodeToCheck.node, map)) {
@@ -163,11 +196,12 @@ public class Wayfinder {
 				if (map.isDarkness(v) && p.isNot(EffectedByDarkness.IGNORE)) { continue; }
 				
 				// Ignoring movement restriction, are there enough moves left to reach tile?
-				int movesLeftAfterEntering = reachable(v, nodeToCheck.movesLeft, map.getTileInfo(v), p);
+				int movesLeftAfterEntering = reachable(v, nodeToCheck.movesLeft, map, p);
 				if (movesLeftAfterEntering >= 0) {
 					// add to selectable/moveable queue if possible
-					addIfSelectable(v, movesLeftAfterEntering, map.getTileInfo(v), charMap, p, selectableTiles, actor);
-					if (movesLeftAfterEntering > 0 && canMoveInto(v, map.getTileInfo(v), charMap, p)) {
+					boolean wall = map.isWall(v);
+					addIfSelectable(v, movesLeftAfterEntering, wall, charMap, p, selectableTiles, actor);
+					if (movesLeftAfterEntering > 0 && canMoveInto(v, wall, charMap, p)) {
 						tilesToCheck.add(new DijkstraNode(v, movesLeftAfterEntering));
 					}
 				}
@@ -177,6 +211,94 @@ public class Wayfinder {
 		return selectableTiles;
 	}
 	
+	/**
+	 * Explores all tiles a CharacterActor can reach the same way as getAllSelectableTiles2,
+	 * but keeps the path to every tile in a PathTree. Among paths of the lowest cost the 
+	 * one with the fewest diagonal steps is kept, the same tie break getPathToTiles uses.
+	 * Tiles are processed in order of (cost, diagonal steps) using buckets, since both are
+	 * small whole numbers.
+	 * @param tree The tree to fill, any previous search in it is replaced
+	 * @param actor The CharacterActor initiating the search
+	 * @param origin Origin tile of the search
+	 * @param reach Number of moves the search can use
+	 * @param map mapInfo defining the current state of the map
+	 * @param p ActionProperties defining the nature of selectable tiles
+	 */
+	public static void buildPathTree(PathTree tree, CharacterActor actor, Vector2 origin,
+			int reach, MapInfo map, ActionProperties p) {
+		tree.reset();
+		tree.actor = actor;
+		tree.reach = reach;
+		Map<Vector2, CharacterActor> charMap = map.getCharacters();
+		Vector2 v = new Vector2();  // reused for lookups
+		
+		// a tile's key is cost * (reach + 1) + diagonal steps, since there can't be more than reach steps
+		int keyScale = reach + 1;
+		IntArray[] buckets = new IntArray[keyScale * keyScale];
+		
+		searchCounter.inc();
+		int start = tree.index((int) origin.x, (int) origin.y);
+		tree.origin = start;
+		tree.stamp[start] = tree.currentStamp;
+		tree.cost[start] = 0;
+		tree.diags[start] = 0;
+		tree.parent[start] = -1;
+		if (isSelectable(origin, map.isWall(origin), charMap, p, actor)) {
+			tree.selectable.add(start);
+		}
+		buckets[0] = new IntArray();
+		buckets[0].add(start);
+		
+		for (int key = 0; key < buckets.length; key++) {
+			IntArray bucket = buckets[key];
+			for (int b = 0; bucket != null && b < bucket.size; b++) {
+				int u = bucket.get(b);
+				if (tree.cost[u] * keyScale + tree.diags[u] != key) { continue; }  // found a better way since
+				expandedCounter.inc();
+				int ux = tree.getX(u);
+				int uy = tree.getY(u);
+				
+				for (int n = 0; n < ADJACENT_X.length; n++) {
+					int x = ux + ADJACENT_X[n];
+					int y = uy + ADJACENT_Y[n];
+					if (x < 0 || y < 0 || x >= tree.width || y >= tree.height) { continue; }
+					v.set(x, y);
+					if (map.isDarkness(v) && p.isNot(EffectedByDarkness.IGNORE)) { continue; }
+					
+					int c = tree.cost[u] + getCost(v, map, p);
+					if (c > reach) { continue; }
+					int d = tree.diags[u] + (ADJACENT_X[n] != 0 && ADJACENT_Y[n] != 0 ? 1 : 0);
+					int i = tree.index(x, y);
+					boolean reached = tree.stamp[i] == tree.currentStamp;
+					if (reached && tree.cost[i] * keyScale + tree.diags[i] <= c * keyScale + d) { continue; }
+					
+					boolean wall = map.isWall(x, y);
+					if (!reached) {
+						tree.stamp[i] = tree.currentStamp;
+						if (isSelectable(v, wall, charMap, p, actor)) {
+							tree.selectable.add(i);
+						}
+					}
+					tree.cost[i] = c;
+					tree.diags[i] = d;
+					tree.parent[i] = u;
+					
+					if (c < reach && canMoveInto(v, wall, charMap, p)) {
+						int newKey = c * keyScale + d;
+						if (buckets[newKey] == null) {
+							buckets[newKey] = new IntArray();
+						}
+						buckets[newKey].add(i);
+					}
+				}
+			}
+		}
+	}
+	
+	// check non-diagonal directions first (for pathfinding)
+	private static final int[] ADJACENT_X = {1, -1, 0, 0, 1, 1, -1, -1};
+	private static final int[] ADJACENT_Y = {0, 0, 1, -1, 1, -1, 1, -1};
+	
 	public static float realDistance(Vector2 origin, Vector2 target) {
 		return Math.abs(origin.dst(target)) / 1.5f;  // regularize for diag movement
 	}
@@ -215,7 +337,8 @@ public class Wayfinder {
 	
 	public static Strategy getStrategyToTiles(Vector2 origin, Set<Vector2> targets,
 			CharacterActor actor, ActionProperties p) {
-		SortedMap<Integer, Vector2> moves = getPathToTiles(origin, targets, RPG.getCurrentMapInfo(), actor, p);
+		SortedMap<Integer, Vector2> moves = Pathfinders.get().getPathToTiles(origin, targets,
+				RPG.getCurrentMapInfo(), actor, p);
 		
 		if (moves == null) {
 			return null;
@@ -234,6 +357,24 @@ public class Wayfinder {
 		return plan;
 	}
 	
+	/**
+	 * Uses the map's connected regions to check if any target could be reached
+	 * from origin without going through walls. Walls and unknown regions are
+	 * always treated as possibly reachable.
+	 * @return false only if every target is known to be cut off from origin
+	 */
+	static boolean mayShareRegion(Vector2 origin, Set<Vector2> targets, MapInfo map) {
+		int start = map.getRegion(origin);
+		if (start <= 0) { return true; }
+		for (Vector2 t : targets) {
+			int r = map.getRegion(t);
+			if (r <= 0 || r == start) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Uses A* search to find the shortest path to one of many tile.
 	 * Attempts to find non-diagonal paths when distance is the same 
@@ -247,6 +388,10 @@ public class Wayfinder {
 	public static SortedMap<Integer, Vector2> getPathToTiles(Vector2 origin, Set<Vector2> targets,
 			MapInfo map, CharacterActor actor, ActionProperties p) {
 		
+		if (p.isNot(CanMoveThrough.WALLS) && !mayShareRegion(origin, targets, map)) {
+			return null;
+		}
+		
 		PriorityQueue<PathNode> toExplore = new PriorityQueue<>();
 		Set<Vector2> exploredNodes = new HashSet<>();
 		
@@ -254,8 +399,10 @@ public class Wayfinder {
 		PathNode startingPoint = new PathNode(origin, 0, realDistance(origin, targets));
 		toExplore.add(startingPoint);
 		
+		searchCounter.inc();
 		while (!toExplore.isEmpty()) {
 			PathNode nodeToCheck = toExplore.remove();
+			expandedCounter.inc();
 			exploredNodes.add(nodeToCheck.node);
 			//System.out.println(nodeToCheck.node + ": " + (nodeToCheck.movesLeft+nodeToCheck.heuristicCost)+ " - " + nodeToCheck.diagCount);
 			if (targets.contains(nodeToCheck.node)) {
@@ -269,7 +416,7 @@ public class Wayfinder {
 				
 
 				// add to selectable/moveable queue if possible
-				if (targets.contains(v) || canMoveInto(v, map.getTileInfo(v), charMap, p)) {
+				if (targets.contains(v) || canMoveInto(v, map.isWall(v), charMap, p)) {
 					toExplore.add(new PathNode(v, realDistance(v, targets), nodeToCheck, getCost(v, map, p)));
 				}
 			}
@@ -280,18 +427,18 @@ public class Wayfinder {
 	/**
 	 * Can the given tile be explored
 	 * @param position Position of tile to explore
-	 * @param t TileInfo about said tile
+	 * @param wall If said tile is a wall
 	 * @param charMap List of all characters on the map on their location
 	 * @param p ActionProperties defining the movement
 	 * @return true if explorable, false otherwise
 	 */
-	private static boolean canMoveInto(Vector2 position, TileInfo t,
+	static boolean canMoveInto(Vector2 position, boolean wall,
 			Map<Vector2, CharacterActor> charMap, ActionProperties p) {
 		boolean notBlocked = !charMap.containsKey(position) ||
 							 p.is(CanMoveThrough.CHARACTER) ||
 							 (p.is(CanMoveThrough.PLAYER) && (charMap.get(position) instanceof PlayerActor)) ||
 							 (p.is(CanMoveThrough.ENEMY) && (charMap.get(position) instanceof EnemyActor));
-		return notBlocked && (!t.isWall() || p.is(CanMoveThrough.WALLS));
+		return notBlocked && (!wall || p.is(CanMoveThrough.WALLS));
 	}
 	
 	public static int getCost(Vector2 v, MapInfo m, ActionProperties p) {
@@ -307,14 +454,14 @@ public class Wayfinder {
 	 * Note: Ignores movement restrictions - check with canMoveInto
 	 * @param position Position to check
 	 * @param movesLeft How many moves are left
-	 * @param t TileInfo about the tile to be moved into
+	 * @param map MapInfo describing the map
 	 * @param p ActionProperties defining the movement
 	 * @return The number of moves left after moving into said tile
 	 *    (returns negative if not reachable)
 	 */
-	private static int reachable(Vector2 position, int movesLeft, TileInfo t, ActionProperties p) {
+	private static int reachable(Vector2 position, int movesLeft, MapInfo map, ActionProperties p) {
 		if (p.is(EffectedByTerrain.RESPECT_TERRAIN)) {
-			return movesLeft - t.getSpeedToCross();
+			return movesLeft - map.getTileSpeedToCross(position);
 		} else  {
 			return movesLeft - 1;
 		}
@@ -326,7 +473,7 @@ public class Wayfinder {
 	 * and movement properties
 	 * @param position Position of a tile
 	 * @param movesLeft Number of moves left
-	 * @param t TileInfo describing tile to be examined
+	 * @param wall If the tile to be examined is a wall
 	 * @param charMap Map of all characters and their locations on map
 	 * @param p ActionProperties defining the movement 
 	 * @param m Map of tile locations to the number of moves left after reaching them
@@ -334,30 +481,41 @@ public class Wayfinder {
 	 *      moves left if the given tile is selectable
 	 * @param actor Actor initiating the movement
 	 */
-	private static void addIfSelectable(Vector2 position, int movesLeft, TileInfo t,
+	private static void addIfSelectable(Vector2 position, int movesLeft, boolean wall,
 			Map<Vector2, CharacterActor> charMap, ActionProperties p, Map<Vector2, Integer> m, CharacterActor actor) {
-		
-		if (p.is(CanSelect.WALLS) && t.isWall()) {
+		if (isSelectable(position, wall, charMap, p, actor)) {
 			m.put(position, movesLeft);
+		}
+	}
+	
+	/**
+	 * @return true if a tile is selectable given the tile and movement properties,
+	 * 		see addIfSelectable
+	 */
+	static boolean isSelectable(Vector2 position, boolean wall,
+			Map<Vector2, CharacterActor> charMap, ActionProperties p, CharacterActor actor) {
+		if (p.is(CanSelect.WALLS) && wall) {
+			return true;
 		} else if (p.is(CanSelect.CHARACTER) && charMap.containsKey(position)) {
-			m.put(position, movesLeft);
+			return true;
 		} else if (p.is(CanSelect.ENEMY) && charMap.containsKey(position) && charMap.get(position) instanceof EnemyActor) {
-			m.put(position, movesLeft);
+			return true;
 		} else if (p.is(CanSelect.PLAYER) && charMap.containsKey(position) && charMap.get(position) instanceof PlayerActor) {
-			m.put(position, movesLeft);
+			return true;
 		} else if (actor != null && p.is(CanSelect.SELF) && position.equals(actor.getCell())) {
-			m.put(position, movesLeft);
-		} else if (p.is(CanSelect.TILE) && !t.isWall() && !charMap.containsKey(position)) {
-			m.put(position, movesLeft);
+			return true;
+		} else if (p.is(CanSelect.TILE) && !wall && !charMap.containsKey(position)) {
+			return true;
 		}
+		return false;
 	}
 	
 	public static boolean canMoveTo(Vector2 position, ActionProperties p) {
 		Map<Vector2, CharacterActor> charMap = RPG.getCurrentMapInfo().getCharacters();
-		TileInfo t = RPG.getCurrentMapInfo().getTileInfo(position);
-		if (p.is(CanSelect.TILE) && !t.isWall() && !charMap.containsKey(position)) {
+		boolean wall = RPG.getCurrentMapInfo().isWall(position);
+		if (p.is(CanSelect.TILE) && !wall && !charMap.containsKey(position)) {
 			return true;
-		} else if (p.is(CanSelect.WALLS) && t.isWall()) {
+		} else if (p.is(CanSelect.WALLS) && wall) {
 			return true;
 		} else if (p.is(CanSelect.CHARACTER) && charMap.containsKey(position)) {
 			return true;
@@ -404,7 +562,7 @@ public class Wayfinder {
 		
 		if (adjTiles.contains(target)) {
 			if (p.is(RequireLineOfSight.REQUIRE)) {
-				return Wayfinder.traceLine(baseTile, target, RPG.getCurrentMapInfo());
+				return Pathfinders.get().traceLine(baseTile, target, RPG.getCurrentMapInfo());
 			} else {
 				return true;
 			}
@@ -415,7 +573,6 @@ public class Wayfinder {
 	
 	public static Set<Vector2> getAdjacentTiles(Vector2 baseTile, int distance, ActionProperties p) {
 		Set<Vector2> s = getAdjacentTiles(baseTile, distance);
-		System.out.println(s);
 		Iterator<Vector2> spacesIt = s.iterator();
 		while (spacesIt.hasNext()) {
 			Vector2 v = spacesIt.next();
@@ -455,7 +612,7 @@ public class Wayfinder {
 	public static Set<Vector2> getAllInSight(Vector2 origin, Set<Vector2> points, MapInfo m) {
 		Set<Vector2> seeAble = new HashSet<>();
 		for (Vector2 point : points) {
-			if (traceLine(point, origin, m)) {
+			if (Pathfinders.get().traceLine(point, origin, m)) {
 				seeAble.add(point);
 			}
 			
@@ -475,7 +632,7 @@ public class Wayfinder {
 		Set<Vector2> seeAble = new HashSet<>();
 		
 		for (Vector2 point : points) {
-			if (!traceLine(point, origin, m)) {
+			if (!Pathfinders.get().traceLine(point, origin, m)) {
 				seeAble.add(point);
 			}
 		}
@@ -491,8 +648,6 @@ public class Wayfinder {
 	 * @return true if line of sight is unobstructed, false otherwise
 	 */
 	public static boolean traceLine(Vector2 a, Vector2 b, MapInfo map) {
-		Set<Vector2> checkedTiles = new HashSet<>();  // to prevent unnecessary recompute, idk if worth
-		
 		// get true center tile positions
 		int x0 = ((int) a.x) * 64 + 32; 
 		int x1 = ((int) b.x) * 64 + 32;
@@ -509,7 +664,7 @@ public class Wayfinder {
 
 		while (x0 != x1 || y0 != y1) {
 			// Found new pixel in line, check if intersects wall tile
-			if (!checkPixel(x0,y0, checkedTiles, map, a, b)) {
+			if (!checkPixel(x0, y0, map, (int) a.x, (int) a.y, (int) b.x, (int) b.y)) {
 				return false;
 			}
 			int e2 = 2*err;
@@ -530,51 +685,33 @@ public class Wayfinder {
 	
 	/**
 	 * Checks if a pixel corresponds to a wall tile. Does some fuzzing so if the pixel
-	 * just barely intersects a wall still returns true
+	 * just barely intersects a wall still returns true. Called for every pixel of a
+	 * line, so looks tiles up directly rather than allocating.
 	 * @param x Pixel x location
 	 * @param y Pixel y location
-	 * @param checkedTiles Set of tiles we've already checked and confirmed are non-wall
-	 * 		to save multiple lookups
 	 * @param map MapInfo describing all tiles in map
-	 * @param origin The start point of line - ignores if this tile is wall
-	 * @param target The end point of the line - ignores if this tile is wall
+	 * @param ax, ay The start point of line - ignores if this tile is wall
+	 * @param bx, by The end point of the line - ignores if this tile is wall
 	 * @return True if pixel is not in a wall tile, false otherwise
 	 */
-	private static boolean checkPixel(int x, int y, Set<Vector2> checkedTiles,
-			MapInfo map, Vector2 origin, Vector2 target) {
+	private static boolean checkPixel(int x, int y, MapInfo map, int ax, int ay, int bx, int by) {
 		int gridx = x / 64;
 		int gridy = y / 64;
-		
-		Vector2 v = new Vector2(gridx, gridy);
-		if (v.equals(origin) || v.equals(target)) {
+		if ((gridx == ax && gridy == ay) || (gridx == bx && gridy == by)) {
 			return true;
 		}
 		
 		// If nearby pixel not wall we're close enough to still return true
 		for (int i = -2; i <= 2; i += 2) {
 			for (int j = -2; j <= 2; j += 2) {
-				if ((x + i) / 64 != gridx || (y+j) / 64 != gridy) {
-					Vector2 altV = new Vector2((x+i)/64, (y+j)/64);
-					if (checkedTiles.contains(altV)) {
+				if ((x + i) / 64 != gridx || (y + j) / 64 != gridy) {
+					if (!map.isWall((x + i) / 64, (y + j) / 64)) {
 						return true;
-					} else {
-						TileInfo t = map.getTileInfo(altV);
-						if (!t.isWall()) {
-							checkedTiles.add(altV);
-							return true;
-						}
 					}
 				}
 			}
 		}
-		
-		if (!checkedTiles.contains(v)) {
-			TileInfo t = map.getTileInfo(v);
-			
-			checkedTiles.add(v);
-			return !t.isWall();
-		}
-		return true;
+		return !map.isWall(gridx, gridy);
 	}
 		
 }
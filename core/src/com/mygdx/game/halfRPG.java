@@ -1,6 +1,8 @@
 package com.mygdx.game;
 
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 /**
  * Top level game class that handles initializing and switching
  * screens
@@ -11,25 +13,58 @@ import com.badlogic.gdx.Game;
 public class halfRPG extends Game {
 	private MainMenu mainMenu;
 	private RPG rpg;
+	private LoadingScreen loading;
+	
+	private long seed;  // seed of the game being loaded or played
+	private String replayPath;  // journal to play back instead of the menu, or null
+	private Journal.Replayer replay;
 	
 	public final static int MENU = 0;  // main menu
 	public final static int RPG = 1;  // rpg game
+	public final static String LOG_DIR = "logs/";  // local folder game event logs and journals are written to
+	
+	public halfRPG() {
+		this(null);
+	}
+	
+	/**
+	 * @param replayPath journal to play back as soon as the game starts, exiting once
+	 * 		it's done, or null to start normally at the menu
+	 */
+	public halfRPG(String replayPath) {
+		this.replayPath = replayPath;
+	}
 	
 	@Override
 	public void create() {
+		GameLog.open(Gdx.files.local(LOG_DIR + "events-" + System.currentTimeMillis() + ".jsonl"), com.mygdx.game.RPG.DEBUG);
+		if (replayPath != null) {
+			replay = new Journal.Replayer(new FileHandle(replayPath));
+			changeScreen(RPG);
+			return;
+		}
 		mainMenu = new MainMenu(this);
 		setScreen(mainMenu);
 		
 	}
 	
+	/**
+	 * @return seed for the game being loaded, the journal's when replaying
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
 	// Given a defined screen enum switches to that screen, creating
 	// it if necessary 
 	public void changeScreen(int screen) {
 		switch(screen) {
 			case RPG:
-				if (rpg == null) {
-					rpg = new RPG(this);
-					this.setScreen(rpg);
+				if (rpg == null && loading == null) {
+					seed = replay != null ? replay.getSeed() : System.nanoTime();
+					// a replay is only valid on the map it was recorded on
+					loading = replay != null ? new LoadingScreen(this, replay.getMapPath()) : new LoadingScreen(this);
+					this.setScreen(loading);
 				}
 				break;
 			case MENU:
@@ -41,4 +76,40 @@ public class halfRPG extends Game {
 		}
 	}
 	
+	/**
+	 * Switches to a game once the LoadingScreen has finished setting it up
+	 * @param loaded the set up game
+	 */
+	public void finishLoading(RPG loaded) {
+		rpg = loaded;
+		setScreen(rpg);
+		loading.dispose();
+		loading = null;
+		
+		if (replay != null) {
+			rpg.startReplay(replay);
+		} else {
+			rpg.startRecording(Gdx.files.local(LOG_DIR + "battle-" + System.currentTimeMillis() + Journal.EXTENSION));
+		}
+	}
+	
+	@Override
+	public void render() {
+		super.render();
+		// replays are for checking and timing, so close once one is done
+		if (replay != null && replay.isFinished()) {
+			Gdx.app.exit();
+		}
+	}
+	
+	@Override
+	public void dispose() {
+		super.dispose();
+		if (rpg != null) {
+			rpg.dispose();
+		}
+		Assets.dispose();
+		GameLog.close();
+	}
+	
 }
\ No newline at end of file
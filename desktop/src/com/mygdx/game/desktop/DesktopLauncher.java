@@ -16,6 +16,12 @@ public class DesktopLauncher {
 		config.width = 1080;
 		config.height = 720;
 		
-		new LwjglApplication(new halfRPG(), config);
+		// --replay <journal> plays a recorded battle back at full speed and exits
+		String replay = null;
+		if (arg.length >= 2 && arg[0].equals("--replay")) {
+			replay = arg[1];
+		}
+		
+		new LwjglApplication(new halfRPG(replay), config);
 	}
 }
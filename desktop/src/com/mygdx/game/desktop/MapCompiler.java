@@ -0,0 +1,37 @@
+package com.mygdx.game.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.mygdx.game.CompiledMap;
+
+/**
+ * Compiles Tiled maps into the binary format the game loads at startup, so
+ * the XML only has to be parsed when a map changes. Takes any number of .tmx
+ * files or directories of them, writing each compiled map next to its source.
+ */
+public class MapCompiler {
+	public static void main (String[] arg) {
+		if (arg.length == 0) {
+			System.err.println("Usage: MapCompiler <map.tmx | directory>...");
+			System.exit(1);
+		}
+		for (String path : arg) {
+			FileHandle f = new FileHandle(path);
+			if (f.isDirectory()) {
+				for (FileHandle tmx : f.list(".tmx")) {
+					compile(tmx);
+				}
+			} else {
+				compile(f);
+			}
+		}
+	}
+	
+	private static void compile(FileHandle tmx) {
+		long start = System.nanoTime();
+		CompiledMap map = CompiledMap.compile(tmx);
+		FileHandle out = tmx.sibling(tmx.nameWithoutExtension() + "." + CompiledMap.EXTENSION);
+		map.write(out);
+		System.out.println(tmx.path() + " -> " + out.name() + " (" + map.width + "x" + map.height + ", "
+				+ (System.nanoTime() - start) / 1000000 + "ms)");
+	}
+}